@@ -19,8 +19,12 @@ interface ApiService {
 
     // ========== PRODUCTOS (Spring Boot API - Puerto 8080) ==========
 
+    // Por páginas: el cursor de la siguiente llega en el header X-Siguiente-Cursor
     @GET("productos")
-    suspend fun getProductos(): Response<List<Producto>>
+    suspend fun getProductos(
+        @Query("cursor") cursor: String? = null,
+        @Query("limite") limite: Int? = null
+    ): Response<List<Producto>>
 
     @GET("productos/{id}")
     suspend fun getProducto(@Path("id") id: Int): Response<Producto>
@@ -296,6 +296,25 @@ fun HomeScreen(
                                 }
                             }
                         }
+
+                        // Siguiente página del catálogo
+                        if (state.siguienteCursor != null) {
+                            item {
+                                Box(
+                                    modifier = Modifier
+                                        .fillMaxWidth()
+                                        .padding(16.dp),
+                                    contentAlignment = Alignment.Center
+                                ) {
+                                    OutlinedButton(
+                                        onClick = { viewModel.loadMoreProducts() },
+                                        enabled = !state.cargandoMas
+                                    ) {
+                                        Text(if (state.cargandoMas) "Cargando..." else "Ver más productos")
+                                    }
+                                }
+                            }
+                        }
                     }
                 }
             }
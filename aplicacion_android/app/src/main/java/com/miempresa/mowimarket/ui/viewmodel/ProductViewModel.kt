@@ -34,7 +34,10 @@ class ProductViewModel : ViewModel() {
             try {
                 val response = apiService.getProductos()
                 if (response.isSuccessful && response.body() != null) {
-                    _productsState.value = ProductsUiState.Success(response.body()!!)
+                    _productsState.value = ProductsUiState.Success(
+                        response.body()!!,
+                        response.headers()["X-Siguiente-Cursor"]
+                    )
                 } else {
                     _productsState.value = ProductsUiState.Error("Error al cargar productos")
                 }
@@ -46,6 +49,31 @@ class ProductViewModel : ViewModel() {
         }
     }
 
+    /**
+     * Cargar la siguiente página de productos y sumarla a la lista
+     */
+    fun loadMoreProducts() {
+        val actual = _productsState.value as? ProductsUiState.Success ?: return
+        val cursor = actual.siguienteCursor ?: return
+        if (actual.cargandoMas) return
+        _productsState.value = actual.copy(cargandoMas = true)
+        viewModelScope.launch {
+            try {
+                val response = apiService.getProductos(cursor)
+                if (response.isSuccessful && response.body() != null) {
+                    _productsState.value = ProductsUiState.Success(
+                        actual.products + response.body()!!,
+                        response.headers()["X-Siguiente-Cursor"]
+                    )
+                } else {
+                    _productsState.value = actual
+                }
+            } catch (e: Exception) {
+                _productsState.value = actual
+            }
+        }
+    }
+
     /**
      * Cargar detalle de producto
      */
@@ -73,7 +101,11 @@ class ProductViewModel : ViewModel() {
  */
 sealed class ProductsUiState {
     object Loading : ProductsUiState()
-    data class Success(val products: List<Producto>) : ProductsUiState()
+    data class Success(
+        val products: List<Producto>,
+        val siguienteCursor: String? = null,
+        val cargandoMas: Boolean = false
+    ) : ProductsUiState()
     data class Error(val message: String) : ProductsUiState()
 }
 
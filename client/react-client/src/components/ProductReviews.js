@@ -9,6 +9,8 @@ import './ProductReviews.css';
 function ProductReviews({ productoId }) {
   const { user, isAuthenticated } = useApp();
   const [reseñas, setReseñas] = useState([]);
+  const [siguienteCursor, setSiguienteCursor] = useState(null);
+  const [resumen, setResumen] = useState({ promedio: 0, total: 0 });
   const [loading, setLoading] = useState(true);
   const [error, setError] = useState(null);
   const [successMessage, setSuccessMessage] = useState(null);
@@ -26,8 +28,13 @@ function ProductReviews({ productoId }) {
     setLoading(true);
     setError(null);
     try {
-      const response = await resenasAPI.obtenerPorProducto(productoId);
+      const [response, resumenResponse] = await Promise.all([
+        resenasAPI.obtenerPorProducto(productoId),
+        resenasAPI.obtenerPromedio(productoId),
+      ]);
       setReseñas(response.data);
+      setSiguienteCursor(response.headers['x-siguiente-cursor'] || null);
+      setResumen(resumenResponse.data);
     } catch (error) {
       console.error('Error al cargar reseñas:', error);
       setError('Error al cargar las reseñas');
@@ -36,6 +43,16 @@ function ProductReviews({ productoId }) {
     }
   };
 
+  const cargarMas = async () => {
+    try {
+      const response = await resenasAPI.obtenerPorProducto(productoId, { cursor: siguienteCursor });
+      setReseñas((actuales) => [...actuales, ...response.data]);
+      setSiguienteCursor(response.headers['x-siguiente-cursor'] || null);
+    } catch (error) {
+      console.error('Error al cargar más reseñas:', error);
+    }
+  };
+
   const handleSubmit = async (e) => {
     e.preventDefault();
     
@@ -78,12 +95,6 @@ function ProductReviews({ productoId }) {
     return stars;
   };
 
-  const calcularPromedio = () => {
-    if (reseñas.length === 0) return 0;
-    const suma = reseñas.reduce((acc, r) => acc + (r.calificacion || 0), 0);
-    return (suma / reseñas.length).toFixed(1);
-  };
-
   if (loading) {
     return <LoadingSpinner />;
   }
@@ -98,11 +109,11 @@ function ProductReviews({ productoId }) {
       )}
 
       <div className="reviews-header">
-        <h3>Reseñas ({reseñas.length})</h3>
-        {reseñas.length > 0 && (
+        <h3>Reseñas ({resumen.total})</h3>
+        {resumen.total > 0 && (
           <div className="average-rating">
-            <span className="average-value">{calcularPromedio()}</span>
-            <div className="average-stars">{renderStars(Math.round(calcularPromedio()))}</div>
+            <span className="average-value">{resumen.promedio.toFixed(1)}</span>
+            <div className="average-stars">{renderStars(Math.round(resumen.promedio))}</div>
           </div>
         )}
       </div>
@@ -181,6 +192,11 @@ function ProductReviews({ productoId }) {
             </div>
           ))
         )}
+        {siguienteCursor && (
+          <button className="btn-add-review" onClick={cargarMas}>
+            Ver más reseñas
+          </button>
+        )}
       </div>
     </div>
   );
@@ -39,6 +39,8 @@ function CatalogPage() {
   const [selectedBrands, setSelectedBrands] = useState([]);
   const [sortBy, setSortBy] = useState('Relevancia');
   const [productosConRating, setProductosConRating] = useState({});
+  const [siguienteCursor, setSiguienteCursor] = useState(null);
+  const [cargandoMas, setCargandoMas] = useState(false);
   const busquedaQuery = searchParams.get('busqueda');
 
   // Extraer marcas únicas de los productos
@@ -64,66 +66,61 @@ function CatalogPage() {
 
   const cargarRatingsProductos = useCallback(async (productosData) => {
     try {
-      const ratingsPromises = productosData.map(async (producto) => {
-        try {
-          const resenasResponse = await resenasAPI.obtenerPorProducto(producto.id);
-          const resenas = resenasResponse.data;
-          
-          if (resenas.length === 0) {
-            return { productoId: producto.id, rating: 0, count: 0 };
-          }
-          
-          const suma = resenas.reduce((acc, r) => acc + (r.calificacion || 0), 0);
-          const promedio = suma / resenas.length;
-          
-          return { productoId: producto.id, rating: promedio, count: resenas.length };
-        } catch (error) {
-          return { productoId: producto.id, rating: 0, count: 0 };
-        }
-      });
-
-      const ratings = await Promise.all(ratingsPromises);
       const ratingsMap = {};
-      ratings.forEach(r => {
-        ratingsMap[r.productoId] = r.rating;
-      });
-      setProductosConRating(ratingsMap);
+      // El backend acepta hasta 100 productos por llamada
+      for (let i = 0; i < productosData.length; i += 100) {
+        const ids = productosData.slice(i, i + 100).map((p) => p.id);
+        if (ids.length === 0) continue;
+        const response = await resenasAPI.obtenerPromedios(ids);
+        response.data.forEach((r) => {
+          ratingsMap[r.productoId] = r.promedio;
+        });
+      }
+      setProductosConRating((actuales) => ({ ...actuales, ...ratingsMap }));
     } catch (error) {
       console.error('Error al cargar ratings:', error);
     }
   }, []);
 
+  // Una página del listado que corresponde (búsqueda, categoría o todo el catálogo)
+  const pedirPagina = useCallback((cursor) => {
+    if (busquedaQuery) {
+      return productosAPI.buscar(busquedaQuery, { cursor });
+    }
+    if (selectedCategory) {
+      return productosAPI.porCategoria(selectedCategory, { cursor });
+    }
+    return productosAPI.listar({ cursor });
+  }, [busquedaQuery, selectedCategory]);
+
   const cargarProductos = useCallback(async () => {
     setLoading(true);
     setError(null);
     try {
       let productosData;
+      let cursor = null;
+      let aiData = null;
       if (busquedaQuery) {
         try {
           const aiResp = await busquedaAPI.buscarConGemini(busquedaQuery);
-          const aiData = aiResp.data;
-          if (aiData?.resultados?.length > 0) {
-            productosData = aiData.resultados;
-          } else {
-            const fallbackResp = await productosAPI.buscar(busquedaQuery);
-            productosData = fallbackResp.data;
-          }
+          aiData = aiResp.data;
         } catch (e) {
-          const fallbackResp = await productosAPI.buscar(busquedaQuery);
-          productosData = fallbackResp.data;
+          // Sin respuesta de Gemini: se usa la búsqueda normal
         }
-      } else if (selectedCategory) {
-        const catResp = await productosAPI.porCategoria(selectedCategory);
-        productosData = catResp.data;
+      }
+      if (aiData?.resultados?.length > 0) {
+        productosData = aiData.resultados;
       } else {
-        const listResp = await productosAPI.listar();
-        productosData = listResp.data;
+        const response = await pedirPagina();
+        productosData = response.data;
+        cursor = response.headers['x-siguiente-cursor'] || null;
       }
       
       // Filtrar solo productos activos
       productosData = productosData.filter(p => p.activo !== false);
       
       setProductosOriginales(productosData);
+      setSiguienteCursor(cursor);
       
       // Cargar ratings de productos
       await cargarRatingsProductos(productosData);
@@ -133,7 +130,24 @@ function CatalogPage() {
     } finally {
       setLoading(false);
     }
-  }, [busquedaQuery, selectedCategory, cargarRatingsProductos]);
+  }, [busquedaQuery, pedirPagina, cargarRatingsProductos]);
+
+  // Siguiente página: los filtros y el orden de la barra lateral se aplican sobre lo ya cargado
+  const cargarMas = async () => {
+    setCargandoMas(true);
+    try {
+      const response = await pedirPagina(siguienteCursor);
+      const nuevos = response.data.filter(p => p.activo !== false);
+      setProductosOriginales((actuales) => [...actuales, ...nuevos]);
+      setSiguienteCursor(response.headers['x-siguiente-cursor'] || null);
+      await cargarRatingsProductos(nuevos);
+    } catch (error) {
+      console.error('Error al cargar más productos:', error);
+      setError('Error al cargar más productos. Por favor, intenta nuevamente.');
+    } finally {
+      setCargandoMas(false);
+    }
+  };
 
   const ordenarProductos = useCallback((productos, orden) => {
     const productosOrdenados = [...productos];
@@ -404,6 +418,11 @@ function CatalogPage() {
               );
             })
           )}
+          {siguienteCursor && (
+            <button className="btn-load-more" onClick={cargarMas} disabled={cargandoMas}>
+              {cargandoMas ? 'Cargando...' : 'Ver más productos'}
+            </button>
+          )}
         </main>
       </div>
     </div>
@@ -10,6 +10,8 @@ function MyOrdersPage() {
   const { user, isAuthenticated } = useApp();
   const navigate = useNavigate();
   const [pedidos, setPedidos] = useState([]);
+  const [siguienteCursor, setSiguienteCursor] = useState(null);
+  const [cargandoMas, setCargandoMas] = useState(false);
   const [loading, setLoading] = useState(true);
   const [error, setError] = useState(null);
 
@@ -29,6 +31,7 @@ function MyOrdersPage() {
     try {
       const response = await pedidosAPI.listar(user.id);
       setPedidos(response.data);
+      setSiguienteCursor(response.headers['x-siguiente-cursor'] || null);
     } catch (error) {
       console.error('Error al cargar pedidos:', error);
       setError('Error al cargar los pedidos. Por favor, intenta nuevamente.');
@@ -37,6 +40,20 @@ function MyOrdersPage() {
     }
   };
 
+  const cargarMas = async () => {
+    setCargandoMas(true);
+    try {
+      const response = await pedidosAPI.listar(user.id, { cursor: siguienteCursor });
+      setPedidos((actuales) => [...actuales, ...response.data]);
+      setSiguienteCursor(response.headers['x-siguiente-cursor'] || null);
+    } catch (error) {
+      console.error('Error al cargar más pedidos:', error);
+      setError('Error al cargar más pedidos. Por favor, intenta nuevamente.');
+    } finally {
+      setCargandoMas(false);
+    }
+  };
+
   const getEstadoColor = (estado) => {
     switch (estado?.toUpperCase()) {
       case 'PENDIENTE':
@@ -133,6 +150,11 @@ function MyOrdersPage() {
                 </div>
               </div>
             ))}
+            {siguienteCursor && (
+              <button className="btn-load-more" onClick={cargarMas} disabled={cargandoMas}>
+                {cargandoMas ? 'Cargando...' : 'Ver pedidos anteriores'}
+              </button>
+            )}
           </div>
         )}
       </div>
@@ -35,19 +35,9 @@ function ProductDetailPage() {
 
         // Cargar rating real del producto
         try {
-          const resenasResponse = await resenasAPI.obtenerPorProducto(id);
-          const resenas = resenasResponse.data || [];
-          if (resenas.length > 0) {
-            const suma = resenas.reduce(
-              (acc, r) => acc + (r.calificacion || 0),
-              0
-            );
-            setRatingPromedio(suma / resenas.length);
-            setRatingCount(resenas.length);
-          } else {
-            setRatingPromedio(0);
-            setRatingCount(0);
-          }
+          const ratingResponse = await resenasAPI.obtenerPromedio(id);
+          setRatingPromedio(ratingResponse.data.promedio || 0);
+          setRatingCount(ratingResponse.data.total || 0);
         } catch (ratingError) {
           console.error('Error al cargar reseñas del producto:', ratingError);
         }
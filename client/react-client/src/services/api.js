@@ -41,8 +41,9 @@ api.interceptors.response.use(
 );
 
 // ==================== PRODUCTOS ====================
+// Los listados van por páginas: el cursor de la siguiente llega en X-Siguiente-Cursor
 export const productosAPI = {
-  // Listar todos los productos
+  // Listar productos (una página)
   listar: (params = {}) => {
     return api.get('/productos', { params });
   },
@@ -52,14 +53,14 @@ export const productosAPI = {
     return api.get(`/productos/${id}`);
   },
 
-  // Buscar productos
-  buscar: (busqueda) => {
-    return api.get('/productos', { params: { busqueda } });
+  // Buscar productos (una página)
+  buscar: (busqueda, params = {}) => {
+    return api.get('/productos', { params: { busqueda, ...params } });
   },
 
-  // Productos por categoría
-  porCategoria: (categoriaId) => {
-    return api.get('/productos', { params: { categoriaId } });
+  // Productos por categoría (una página)
+  porCategoria: (categoriaId, params = {}) => {
+    return api.get('/productos', { params: { categoriaId, ...params } });
   },
 
   // Productos más vendidos
@@ -117,9 +118,9 @@ export const carritoAPI = {
 
 // ==================== PEDIDOS ====================
 export const pedidosAPI = {
-  // Listar pedidos del usuario
-  listar: (usuarioId) => {
-    return api.get('/pedidos', { params: { usuarioId } });
+  // Listar pedidos del usuario (por páginas: el cursor siguiente llega en X-Siguiente-Cursor)
+  listar: (usuarioId, params = {}) => {
+    return api.get('/pedidos', { params: { usuarioId, ...params } });
   },
 
   // Obtener detalle del pedido
@@ -166,9 +167,19 @@ export const pagosAPI = {
 
 // ==================== RESEÑAS ====================
 export const resenasAPI = {
-  // Obtener reseñas de un producto
-  obtenerPorProducto: (productoId) => {
-    return api.get(`/resenas/${productoId}`);
+  // Obtener reseñas de un producto (por páginas: el cursor siguiente llega en X-Siguiente-Cursor)
+  obtenerPorProducto: (productoId, params = {}) => {
+    return api.get(`/resenas/${productoId}`, { params });
+  },
+
+  // Promedio, total e histograma de un producto
+  obtenerPromedio: (productoId) => {
+    return api.get(`/resenas/promedio/${productoId}`);
+  },
+
+  // Promedios de varios productos en una sola llamada
+  obtenerPromedios: (productoIds) => {
+    return api.get('/resenas/promedios', { params: { productoIds: productoIds.join(',') } });
   },
 
   // Crear reseña
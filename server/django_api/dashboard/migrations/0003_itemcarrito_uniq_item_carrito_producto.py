@@ -0,0 +1,15 @@
+from django.db import migrations, models
+
+
+class Migration(migrations.Migration):
+
+    dependencies = [
+        ('mowi_dashboard', '0002_alter_carrito_usuario_alter_pedido_usuario_and_more'),
+    ]
+
+    operations = [
+        migrations.AddConstraint(
+            model_name='itemcarrito',
+            constraint=models.UniqueConstraint(fields=('carrito', 'producto'), name='uniq_item_carrito_producto'),
+        ),
+    ]
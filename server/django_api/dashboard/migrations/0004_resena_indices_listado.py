@@ -0,0 +1,19 @@
+from django.db import migrations, models
+
+
+class Migration(migrations.Migration):
+
+    dependencies = [
+        ('mowi_dashboard', '0003_itemcarrito_uniq_item_carrito_producto'),
+    ]
+
+    operations = [
+        migrations.AddIndex(
+            model_name='reseña',
+            index=models.Index(fields=['producto', 'fecha_creacion'], name='resena_producto_fecha_idx'),
+        ),
+        migrations.AddIndex(
+            model_name='reseña',
+            index=models.Index(fields=['producto', 'calificacion', 'fecha_creacion'], name='resena_producto_calif_idx'),
+        ),
+    ]
@@ -45,6 +45,12 @@ class ItemCarrito(models.Model):
     fecha_creacion = models.DateTimeField(auto_now_add=True)
     fecha_actualizacion = models.DateTimeField(auto_now=True)
 
+    class Meta:
+        # Una línea por producto en cada carrito (la API hace upsert sobre esta clave)
+        constraints = [
+            models.UniqueConstraint(fields=['carrito', 'producto'], name='uniq_item_carrito_producto'),
+        ]
+
     @property
     def subtotal(self):
         return self.producto.precio * self.cantidad
@@ -116,6 +122,10 @@ class Reseña(models.Model):
                 name='calificacion_rango_valido'
             )
         ]
+        indexes = [
+            models.Index(fields=['producto', 'fecha_creacion'], name='resena_producto_fecha_idx'),
+            models.Index(fields=['producto', 'calificacion', 'fecha_creacion'], name='resena_producto_calif_idx'),
+        ]
     
     def __str__(self):
         return f"{self.usuario.get_full_name()} - {self.producto.nombre} ({self.calificacion}⭐)"
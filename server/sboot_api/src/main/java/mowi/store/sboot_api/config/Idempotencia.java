@@ -0,0 +1,281 @@
+package mowi.store.sboot_api.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import mowi.store.sboot_api.model.RespuestaIdempotente;
+import mowi.store.sboot_api.repository.RespuestaIdempotenteRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Idempotency-Key para los POST que crean cosas (pedido, Payment Intent).
+ *
+ * - La primera petición con una clave reserva una fila EN_CURSO (INSERT IGNORE)
+ *   y se ejecuta; si termina en 2xx se guarda su respuesta.
+ * - Los reintentos con la misma clave reciben la respuesta guardada (cabecera
+ *   Idempotent-Replayed: true) sin volver a ejecutar el endpoint.
+ * - Mientras la original sigue en curso, el reintento recibe 409. Si la reserva
+ *   lleva más de idempotencia.abandono-min sin completarse (el servidor cayó a
+ *   mitad de la petición), el reintento con la misma petición la reclama y se ejecuta.
+ * - La misma clave con otra petición (otros parámetros o cuerpo) recibe 422.
+ * - Si la original falla, la clave se libera y el reintento se ejecuta de nuevo.
+ *
+ * Las respuestas recientes se sirven desde memoria (LRU acotado); la tabla
+ * mowi_idempotencia las conserva idempotencia.ttl-horas entre reinicios e instancias.
+ * Sin cabecera la petición pasa igual que antes.
+ */
+@Component
+public class Idempotencia extends OncePerRequestFilter {
+
+    public static final String CABECERA = "Idempotency-Key";
+    private static final int LARGO_MAXIMO_CLAVE = 100;
+
+    @Autowired
+    private RespuestaIdempotenteRepository repositorio;
+
+    @Value("${idempotencia.rutas:/api/pagos/crear-payment-intent,/api/pedidos/pago}")
+    private List<String> rutas;
+
+    @Value("${idempotencia.ttl-horas:24}")
+    private long ttlHoras;
+
+    @Value("${idempotencia.memoria.max-entradas:1000}")
+    private int maxEnMemoria;
+
+    @Value("${idempotencia.abandono-min:5}")
+    private long abandonoMinutos;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // Solo respuestas COMPLETADAS (no cambian); las reservas en curso se consultan en la base
+    private final Map<String, RespuestaIdempotente> recientes = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, RespuestaIdempotente> mayor) {
+            return size() > maxEnMemoria;
+        }
+    };
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"POST".equals(request.getMethod())
+                || request.getHeader(CABECERA) == null
+                || !rutas.contains(request.getRequestURI());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain chain) throws ServletException, IOException {
+        String claveCliente = request.getHeader(CABECERA).trim();
+        if (claveCliente.isEmpty() || claveCliente.length() > LARGO_MAXIMO_CLAVE) {
+            error(response, HttpServletResponse.SC_BAD_REQUEST,
+                    CABECERA + " debe tener entre 1 y " + LARGO_MAXIMO_CLAVE + " caracteres");
+            return;
+        }
+
+        PeticionLeida peticion = new PeticionLeida(request);
+        String clave = request.getRequestURI() + "|" + claveCliente;
+        String huella = huella(peticion);
+
+        RespuestaIdempotente previa = buscar(clave);
+        if (previa == null && repositorio.reservar(clave, huella, LocalDateTime.now()) == 0) {
+            // Otra petición (u otra instancia) la reservó justo ahora
+            previa = buscar(clave);
+            if (previa == null) {
+                error(response, HttpServletResponse.SC_CONFLICT, "Hay una petición en curso con la misma " + CABECERA);
+                return;
+            }
+        }
+        if (previa != null && abandonada(previa, huella)
+                && repositorio.reclamar(clave, huella, LocalDateTime.now(), limiteAbandono()) == 1) {
+            previa = null; // esta petición se queda con la clave
+        }
+        if (previa != null) {
+            responderPrevia(previa, huella, response);
+            return;
+        }
+
+        ContentCachingResponseWrapper respuesta = new ContentCachingResponseWrapper(response);
+        boolean guardada = false;
+        try {
+            chain.doFilter(peticion, respuesta);
+            if (respuesta.getStatus() >= 200 && respuesta.getStatus() < 300) {
+                guardar(clave, huella, respuesta);
+                guardada = true;
+            }
+        } finally {
+            if (!guardada) {
+                repositorio.liberar(clave);
+            }
+            respuesta.copyBodyToResponse();
+        }
+    }
+
+    private void responderPrevia(RespuestaIdempotente previa, String huella, HttpServletResponse response)
+            throws IOException {
+        if (!previa.getHuella().equals(huella)) {
+            error(response, 422, "La " + CABECERA + " ya se usó con otra petición");
+        } else if (!previa.completada()) {
+            error(response, HttpServletResponse.SC_CONFLICT, "Hay una petición en curso con la misma " + CABECERA);
+        } else {
+            response.setStatus(previa.getStatus());
+            if (previa.getContentType() != null) {
+                response.setContentType(previa.getContentType());
+            }
+            response.setHeader("Idempotent-Replayed", "true");
+            byte[] cuerpo = previa.getCuerpo() != null ? previa.getCuerpo().getBytes(StandardCharsets.UTF_8) : new byte[0];
+            response.setContentLength(cuerpo.length);
+            response.getOutputStream().write(cuerpo);
+        }
+    }
+
+    private RespuestaIdempotente buscar(String clave) {
+        synchronized (recientes) {
+            RespuestaIdempotente enMemoria = recientes.get(clave);
+            if (enMemoria != null && !vencida(enMemoria)) {
+                return enMemoria;
+            }
+            recientes.remove(clave);
+        }
+        // En la base vale hasta que limpiar() la borre: mientras exista, la clave está ocupada
+        RespuestaIdempotente enBase = repositorio.findById(clave).orElse(null);
+        if (enBase != null && enBase.completada()) {
+            recordar(enBase);
+        }
+        return enBase;
+    }
+
+    private void guardar(String clave, String huella, ContentCachingResponseWrapper respuesta) {
+        String cuerpo = new String(respuesta.getContentAsByteArray(), StandardCharsets.UTF_8);
+        repositorio.completar(clave, respuesta.getStatus(), respuesta.getContentType(), cuerpo);
+
+        RespuestaIdempotente completada = new RespuestaIdempotente();
+        completada.setClave(clave);
+        completada.setHuella(huella);
+        completada.setEstado("COMPLETADA");
+        completada.setStatus(respuesta.getStatus());
+        completada.setContentType(respuesta.getContentType());
+        completada.setCuerpo(cuerpo);
+        completada.setFechaCreacion(LocalDateTime.now());
+        recordar(completada);
+    }
+
+    private void recordar(RespuestaIdempotente respuesta) {
+        synchronized (recientes) {
+            recientes.put(respuesta.getClave(), respuesta);
+        }
+    }
+
+    private boolean vencida(RespuestaIdempotente respuesta) {
+        return respuesta.getFechaCreacion().isBefore(LocalDateTime.now().minusHours(ttlHoras));
+    }
+
+    private boolean abandonada(RespuestaIdempotente respuesta, String huella) {
+        return !respuesta.completada() && respuesta.getHuella().equals(huella)
+                && respuesta.getFechaCreacion().isBefore(limiteAbandono());
+    }
+
+    private LocalDateTime limiteAbandono() {
+        return LocalDateTime.now().minusMinutes(abandonoMinutos);
+    }
+
+    // Borra de la tabla las respuestas vencidas y las reservas que quedaron colgadas
+    @Scheduled(fixedDelayString = "${idempotencia.limpieza-ms:3600000}")
+    public void limpiar() {
+        int borradas = repositorio.borrarVencidas(LocalDateTime.now().minusHours(ttlHoras), limiteAbandono());
+        if (borradas > 0) {
+            System.out.println("🧹 Claves de idempotencia vencidas borradas: " + borradas);
+        }
+    }
+
+    private void error(HttpServletResponse response, int status, String mensaje) throws IOException {
+        response.setStatus(status);
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.getWriter().write(objectMapper.writeValueAsString(Map.of("error", mensaje)));
+    }
+
+    // SHA-256 de método, ruta, parámetros y cuerpo
+    static String huella(PeticionLeida peticion) {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            sha.update((peticion.getMethod() + " " + peticion.getRequestURI() + "?"
+                    + (peticion.getQueryString() != null ? peticion.getQueryString() : "") + "\n")
+                    .getBytes(StandardCharsets.UTF_8));
+            sha.update(peticion.cuerpo);
+            return HexFormat.of().formatHex(sha.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // Petición con el cuerpo ya leído, para calcular la huella y dejar que el controlador lo lea igual
+    static class PeticionLeida extends HttpServletRequestWrapper {
+        final byte[] cuerpo;
+
+        PeticionLeida(HttpServletRequest request) throws IOException {
+            super(request);
+            this.cuerpo = request.getInputStream().readAllBytes();
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream datos = new ByteArrayInputStream(cuerpo);
+            return new ServletInputStream() {
+                @Override
+                public int read() {
+                    return datos.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return datos.read(b, off, len);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return datos.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String charset = getCharacterEncoding() != null ? getCharacterEncoding() : "UTF-8";
+            return new BufferedReader(new InputStreamReader(getInputStream(), Charset.forName(charset)));
+        }
+    }
+}
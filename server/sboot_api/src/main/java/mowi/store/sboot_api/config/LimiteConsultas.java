@@ -0,0 +1,73 @@
+package mowi.store.sboot_api.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Guardia contra N+1: cuenta las sentencias SQL que Hibernate ejecuta en cada
+ * petición HTTP.
+ *
+ * - Si una petición pasa de consultas.max-por-peticion, se avisa en el log.
+ * - Con consultas.estricto=true la sentencia que supera el límite lanza una
+ *   excepción. Está activo en los perfiles dev y test, así que un N+1 nuevo
+ *   hace fallar la petición en desarrollo y en las pruebas.
+ *
+ * Solo cuenta lo que pasa por Hibernate; las escrituras en lote con JdbcTemplate no.
+ */
+@Component
+public class LimiteConsultas extends OncePerRequestFilter implements StatementInspector, HibernatePropertiesCustomizer {
+
+    // StatementInspector es Serializable; esta instancia no se serializa nunca
+    private static final long serialVersionUID = 1L;
+
+    private static final ThreadLocal<int[]> CONTADOR = new ThreadLocal<>();
+
+    @Value("${consultas.max-por-peticion:20}")
+    private int maxPorPeticion;
+
+    @Value("${consultas.estricto:false}")
+    private boolean estricto;
+
+    // Registra esta instancia como StatementInspector de Hibernate
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        hibernateProperties.put(AvailableSettings.STATEMENT_INSPECTOR, this);
+    }
+
+    @Override
+    public String inspect(String sql) {
+        int[] contador = CONTADOR.get();
+        if (contador != null && ++contador[0] > maxPorPeticion && estricto) {
+            throw new RuntimeException("Demasiadas consultas en una petición (" + contador[0]
+                    + " > " + maxPorPeticion + "): posible N+1");
+        }
+        return sql;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain chain) throws ServletException, IOException {
+        int[] contador = {0};
+        CONTADOR.set(contador);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            CONTADOR.remove();
+            if (contador[0] > maxPorPeticion) {
+                System.out.println("⚠️ " + contador[0] + " consultas en " + request.getMethod() + " "
+                        + request.getRequestURI() + " (máximo " + maxPorPeticion + ")");
+            }
+        }
+    }
+}
@@ -1,11 +1,16 @@
 package mowi.store.sboot_api.controller;
 
+import mowi.store.sboot_api.model.Producto;
 import mowi.store.sboot_api.service.BuscaGeminiService;
+import mowi.store.sboot_api.service.CacheBusquedaGemini;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/busca-gemini")
@@ -15,6 +20,9 @@ public class BuscaGeminiController {
     @Autowired
     private BuscaGeminiService buscaGeminiService;
 
+    @Autowired
+    private CacheBusquedaGemini cacheBusquedaGemini;
+
     /**
      * Endpoint: POST /api/busca-gemini/buscar
      * Búsqueda con IA REAL de Google Gemini
@@ -26,21 +34,73 @@ public class BuscaGeminiController {
      * - "productos en oferta para regalos"
      */
     @PostMapping("/buscar")
-    public Map<String, Object> buscarConGemini(@RequestBody Map<String, String> request) {
+    public CompletableFuture<Map<String, Object>> buscarConGemini(@RequestBody Map<String, String> request) {
         String consulta = request.get("consulta");
 
-        BuscaGeminiService.BuscaGeminiResponse respuesta =
-                buscaGeminiService.buscarConGemini(consulta);
+        // Asíncrono: el hilo de Tomcat se libera mientras Gemini responde
+        return buscaGeminiService.buscarConGemini(consulta).thenApply(respuesta -> {
+            Map<String, Object> response = new HashMap<>();
+            response.put("consulta", respuesta.consulta);
+            response.put("resultados", respuesta.resultados);
+            response.put("total", respuesta.total);
+            response.put("mensaje", respuesta.mensaje);
+            response.put("razonamientoIA", respuesta.razonamientoGemini);
+            response.put("tipo", respuesta.tipo); // GEMINI_AI, o LOCAL si Gemini no respondió
+
+            return response;
+        });
+    }
+
+    /**
+     * Endpoint: GET /api/busca-gemini/buscar/stream?consulta=laptop barata
+     * Igual que /buscar pero con Server-Sent Events:
+     * - event "local":  productos encontrados localmente (llega en milisegundos)
+     * - event "gemini": cada producto elegido por Gemini, a medida que llega su ID
+     * - event "fin":    resumen final (mismo formato que /buscar, sin resultados repetidos)
+     */
+    @GetMapping(value = "/buscar/stream", produces = "text/event-stream")
+    public SseEmitter buscarConGeminiStream(@RequestParam String consulta) {
+        SseEmitter emitter = new SseEmitter(30_000L);
+
+        BuscaGeminiService.OyenteBusqueda oyente = new BuscaGeminiService.OyenteBusqueda() {
+            @Override
+            public void candidatosLocales(List<Producto> productos) {
+                enviar(emitter, "local", productos);
+            }
+
+            @Override
+            public void productoGemini(Producto producto) {
+                enviar(emitter, "gemini", producto);
+            }
+        };
 
-        Map<String, Object> response = new HashMap<>();
-        response.put("consulta", respuesta.consulta);
-        response.put("resultados", respuesta.resultados);
-        response.put("total", respuesta.total);
-        response.put("mensaje", respuesta.mensaje);
-        response.put("razonamientoIA", respuesta.razonamientoGemini);
-        response.put("tipo", "GEMINI_AI"); // Indicador de que es IA real
+        buscaGeminiService.buscarConGeminiStream(consulta, oyente).whenComplete((respuesta, error) -> {
+            if (error != null) {
+                emitter.completeWithError(error);
+                return;
+            }
+            Map<String, Object> fin = new HashMap<>();
+            fin.put("consulta", respuesta.consulta);
+            fin.put("total", respuesta.total);
+            fin.put("mensaje", respuesta.mensaje);
+            fin.put("razonamientoIA", respuesta.razonamientoGemini);
+            fin.put("tipo", respuesta.tipo);
+            if ("LOCAL".equals(respuesta.tipo)) {
+                fin.put("resultados", respuesta.resultados);
+            }
+            enviar(emitter, "fin", fin);
+            emitter.complete();
+        });
+
+        return emitter;
+    }
 
-        return response;
+    private void enviar(SseEmitter emitter, String evento, Object datos) {
+        try {
+            emitter.send(SseEmitter.event().name(evento).data(datos));
+        } catch (IOException | IllegalStateException e) {
+            // El cliente cerró la conexión: el resto de eventos se descarta
+        }
     }
 
     /**
@@ -48,14 +108,23 @@ public class BuscaGeminiController {
      * Obtiene sugerencias mejoradas usando Gemini
      */
     @GetMapping("/sugerencias")
-    public Map<String, Object> obtenerSugerenciasGemini(@RequestParam String q) {
-        List<String> sugerencias = buscaGeminiService.obtenerSugerenciasConGemini(q);
+    public CompletableFuture<Map<String, Object>> obtenerSugerenciasGemini(@RequestParam String q) {
+        return buscaGeminiService.obtenerSugerenciasConGemini(q).thenApply(sugerencias -> {
+            Map<String, Object> respuesta = new HashMap<>();
+            respuesta.put("consulta", q);
+            respuesta.put("sugerencias", sugerencias);
+            respuesta.put("tipo", "GEMINI_AI");
 
-        Map<String, Object> respuesta = new HashMap<>();
-        respuesta.put("consulta", q);
-        respuesta.put("sugerencias", sugerencias);
-        respuesta.put("tipo", "GEMINI_AI");
+            return respuesta;
+        });
+    }
 
-        return respuesta;
+    /**
+     * Endpoint: GET /api/busca-gemini/cache/estadisticas
+     * Aciertos, fallos y tamaño de la caché de búsquedas con Gemini
+     */
+    @GetMapping("/cache/estadisticas")
+    public Map<String, Object> estadisticasCache() {
+        return cacheBusquedaGemini.estadisticas();
     }
 }
\ No newline at end of file
@@ -23,7 +23,7 @@ public class CarritoController {
 
     // POST /api/carrito/agregar - Agregar producto al carrito
     @PostMapping("/agregar")
-    public ItemCarrito agregarAlCarrito(
+    public Map<String, Object> agregarAlCarrito(
             @RequestParam Long usuarioId,
             @RequestParam Long productoId,
             @RequestParam Integer cantidad) {
@@ -51,6 +51,16 @@ public class CarritoController {
         return Map.of("mensaje", "Producto eliminado del carrito");
     }
 
+    // POST /api/carrito/sincronizar - Aplicar muchos cambios de una vez (sincronizar carrito móvil)
+    // Cuerpo: {"agregar":[{"productoId":1,"cantidad":2}], "actualizar":[...], "eliminar":[5, 7]}
+    @PostMapping("/sincronizar")
+    public Carrito sincronizarCarrito(
+            @RequestParam Long usuarioId,
+            @RequestBody CarritoService.CambiosCarrito cambios) {
+
+        return carritoService.sincronizarCarrito(usuarioId, cambios);
+    }
+
     // DELETE /api/carrito/limpiar - Limpiar todo el carrito
     @DeleteMapping("/limpiar")
     public Map<String, String> limpiarCarrito(@RequestParam Long usuarioId) {
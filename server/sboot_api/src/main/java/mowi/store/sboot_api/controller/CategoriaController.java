@@ -2,6 +2,7 @@ package mowi.store.sboot_api.controller;
 
 import mowi.store.sboot_api.model.Categoria;
 import mowi.store.sboot_api.repository.CategoriaRepository;
+import mowi.store.sboot_api.service.ProductoService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 import java.util.List;
@@ -14,6 +15,9 @@ public class CategoriaController {
     @Autowired
     private CategoriaRepository categoriaRepository;
 
+    @Autowired
+    private ProductoService productoService;
+
     // GET /api/categorias - Listar todas las categorías
     @GetMapping
     public List<Categoria> listarCategorias() {
@@ -42,6 +46,9 @@ public class CategoriaController {
         categoria.setNombre(categoriaActualizada.getNombre());
         categoria.setDescripcion(categoriaActualizada.getDescripcion());
 
-        return categoriaRepository.save(categoria);
+        Categoria guardada = categoriaRepository.save(categoria);
+        // El nombre de la categoría se indexa en la búsqueda de productos
+        productoService.notificarCambioProductos();
+        return guardada;
     }
 }
\ No newline at end of file
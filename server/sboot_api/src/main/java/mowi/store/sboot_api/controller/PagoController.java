@@ -1,8 +1,14 @@
 package mowi.store.sboot_api.controller;
 
+import mowi.store.sboot_api.service.ConciliadorPagos;
+import mowi.store.sboot_api.service.EventosStripe;
 import mowi.store.sboot_api.service.PagoStripeService;
+import mowi.store.sboot_api.service.PasarelaStripe;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -14,6 +20,15 @@ public class PagoController {
     @Autowired
     private PagoStripeService pagoStripeService;
 
+    @Autowired
+    private EventosStripe eventosStripe;
+
+    @Autowired
+    private PasarelaStripe pasarelaStripe;
+
+    @Autowired
+    private ConciliadorPagos conciliadorPagos;
+
     /**
      * Endpoint: POST /api/pagos/crear-payment-intent
      *
@@ -47,7 +62,7 @@ public class PagoController {
     /**
      * Endpoint: POST /api/pagos/confirmar
      *
-     * Confirmar que el pago fue procesado en Stripe
+     * Estado del pago según la transacción local (la actualizan los webhooks de Stripe)
      *
      * Request:
      * {
@@ -71,6 +86,63 @@ public class PagoController {
         return pagoStripeService.confirmarPago(paymentIntentId);
     }
 
+    /**
+     * Endpoint: POST /api/pagos/webhook
+     *
+     * Eventos de Stripe (payment_intent.succeeded, .processing, .payment_failed, .canceled).
+     * Se verifica la firma y el evento se encola; la respuesta no espera a la base de datos.
+     *
+     * - 200: evento aceptado (o de un tipo que se ignora)
+     * - 400: firma inválida o webhook sin configurar
+     * - 503: cola llena, Stripe reintenta más tarde
+     *
+     * Probar en local: stripe listen --forward-to localhost:8080/api/pagos/webhook
+     * (el secreto whsec_... que imprime va en stripe.webhook.secreto)
+     */
+    @PostMapping("/webhook")
+    public ResponseEntity<Map<String, Object>> recibirWebhook(
+            @RequestBody String payload,
+            @RequestHeader(value = "Stripe-Signature", required = false) String firma) {
+        EventosStripe.EventoPago evento;
+        try {
+            evento = eventosStripe.verificar(payload, firma);
+        } catch (RuntimeException e) {
+            System.out.println("⚠️ Webhook de Stripe rechazado: " + e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+
+        if (evento != null && !eventosStripe.encolar(evento)) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(Map.of("error", "Cola de eventos llena, reintentar"));
+        }
+        return ResponseEntity.ok(Map.of("recibido", true));
+    }
+
+    // GET /api/pagos/webhook/estado - Cola y contadores del procesamiento de webhooks
+    @GetMapping("/webhook/estado")
+    public Map<String, Object> estadoWebhooks() {
+        return eventosStripe.estado();
+    }
+
+    // GET /api/pagos/stripe/estado - Circuito, cupo libre y llamadas rechazadas del cliente de Stripe
+    @GetMapping("/stripe/estado")
+    public Map<String, Object> estadoStripe() {
+        return pasarelaStripe.estado();
+    }
+
+    // GET /api/pagos/reconciliacion/estado - Último ciclo de conciliación, totales y retraso
+    @GetMapping("/reconciliacion/estado")
+    public Map<String, Object> estadoReconciliacion() {
+        return conciliadorPagos.estado();
+    }
+
+    // POST /api/pagos/reconciliacion - Lanza un ciclo de conciliación en segundo plano y devuelve el estado actual
+    @PostMapping("/reconciliacion")
+    public ResponseEntity<Map<String, Object>> conciliar() {
+        System.out.println("🔄 Conciliación de pagos solicitada manualmente");
+        return ResponseEntity.accepted().body(conciliadorPagos.solicitar());
+    }
+
     /**
      * Endpoint: GET /api/pagos/estado/{pedidoId}
      *
@@ -92,6 +164,22 @@ public class PagoController {
         return pagoStripeService.obtenerEstadoPago(pedidoId);
     }
 
+    /**
+     * Endpoint: GET /api/pagos/estado/{pedidoId}/esperar?estado=PENDIENTE&plazoMs=25000
+     *
+     * Long-polling: responde en cuanto el estado del pago deja de ser el indicado
+     * (al instante si ya es otro) o al vencer el plazo, con el estado actual.
+     * El cliente vuelve a llamar con el último estado recibido hasta que sea final
+     * (EXITOSO o FALLIDO). Mientras espera no ocupa ningún hilo del servidor.
+     */
+    @GetMapping("/estado/{pedidoId}/esperar")
+    public DeferredResult<Map<String, Object>> esperarEstadoPago(
+            @PathVariable Long pedidoId,
+            @RequestParam(required = false) String estado,
+            @RequestParam(required = false) Long plazoMs) {
+        return pagoStripeService.esperarEstadoPago(pedidoId, estado, plazoMs);
+    }
+
     /**
      * ==================== ENDPOINT DE PRUEBA ====================
      *
@@ -1,17 +1,17 @@
 package mowi.store.sboot_api.controller;
 
-import mowi.store.sboot_api.model.DetallePedido;
 import mowi.store.sboot_api.model.Pedido;
+import mowi.store.sboot_api.repository.PedidoRepository;
 import mowi.store.sboot_api.service.PedidoService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 @RestController
 @RequestMapping("/api/pedidos")
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = {"X-Siguiente-Cursor", "X-Limite"})
 public class PedidoController {
 
     @Autowired
@@ -26,31 +26,28 @@ public class PedidoController {
         return pedidoService.crearPedidoDesdeCarrito(usuarioId, metodoPago);
     }
 
-    // GET /api/pedidos - Listar pedidos del usuario
+    // GET /api/pedidos - Listar pedidos del usuario (resumen paginado, más recientes primero)
     @GetMapping
-    public List<Pedido> listarPedidosUsuario(@RequestParam Long usuarioId) {
-        return pedidoService.listarPedidosUsuario(usuarioId);
+    public ResponseEntity<List<PedidoRepository.ResumenPedido>> listarPedidosUsuario(
+            @RequestParam Long usuarioId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limite) {
+        return responder(pedidoService.listarPedidosUsuario(usuarioId, cursor, limite));
     }
 
     // GET /api/pedidos/{id} - Obtener detalle del pedido
     @GetMapping("/{id}")
     public Map<String, Object> obtenerDetallePedido(@PathVariable Long id) {
-        Pedido pedido = pedidoService.obtenerPedido(id)
-                .orElseThrow(() -> new RuntimeException("Pedido no encontrado"));
-
-        List<DetallePedido> detalles = pedidoService.obtenerDetallesPedido(id);
-
-        Map<String, Object> respuesta = new HashMap<>();
-        respuesta.put("pedido", pedido);
-        respuesta.put("detalles", detalles);
-
-        return respuesta;
+        return pedidoService.obtenerPedidoConDetalles(id);
     }
 
     // GET /api/pedidos/usuario/{usuarioId} - Listar todos los pedidos del usuario
     @GetMapping("/usuario/{usuarioId}")
-    public List<Pedido> obtenerPedidosUsuario(@PathVariable Long usuarioId) {
-        return pedidoService.listarPedidosUsuario(usuarioId);
+    public ResponseEntity<List<PedidoRepository.ResumenPedido>> obtenerPedidosUsuario(
+            @PathVariable Long usuarioId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limite) {
+        return responder(pedidoService.listarPedidosUsuario(usuarioId, cursor, limite));
     }
 
     // PUT /api/pedidos/{id}/estado - Actualizar estado del pedido
@@ -61,4 +58,13 @@ public class PedidoController {
 
         return pedidoService.actualizarEstado(id, nuevoEstado);
     }
+
+    private ResponseEntity<List<PedidoRepository.ResumenPedido>> responder(PedidoService.PaginaPedidos pagina) {
+        ResponseEntity.BodyBuilder respuesta = ResponseEntity.ok()
+                .header("X-Limite", String.valueOf(pagina.limite));
+        if (pagina.siguienteCursor != null) {
+            respuesta.header("X-Siguiente-Cursor", pagina.siguienteCursor);
+        }
+        return respuesta.body(pagina.pedidos);
+    }
 }
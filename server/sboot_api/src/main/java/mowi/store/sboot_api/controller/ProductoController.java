@@ -1,34 +1,48 @@
 package mowi.store.sboot_api.controller;
 
 import mowi.store.sboot_api.model.Producto;
+import mowi.store.sboot_api.service.Autocompletado;
+import mowi.store.sboot_api.service.InventarioFlash;
 import mowi.store.sboot_api.service.ProductoService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import java.util.List;
+import java.util.Map;
 
+/**
+ * Los listados devuelven una página (JSON array) de como máximo
+ * ProductoService.LIMITE_MAXIMO productos. Para pedir la siguiente página se
+ * envía ?cursor= con el valor del header X-Siguiente-Cursor (ausente en la última).
+ */
 @RestController
 @RequestMapping("/api/productos")
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = {"X-Siguiente-Cursor", "X-Limite"})
 public class ProductoController {
 
     @Autowired
     private ProductoService productoService;
 
+    @Autowired
+    private InventarioFlash inventarioFlash;
+
     // GET /api/productos - Listar todos los productos
     @GetMapping
-    public List<Producto> listarProductos(
+    public ResponseEntity<List<Producto>> listarProductos(
             @RequestParam(required = false) String busqueda,
-            @RequestParam(required = false) Long categoriaId) {
+            @RequestParam(required = false) Long categoriaId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limite) {
 
         if (busqueda != null && !busqueda.isEmpty()) {
-            return productoService.buscar(busqueda);
+            return responder(productoService.buscar(busqueda, cursor, limite));
         }
 
         if (categoriaId != null) {
-            return productoService.productosPorCategoria(categoriaId);
+            return responder(productoService.productosPorCategoria(categoriaId, cursor, limite));
         }
 
-        return productoService.listarProductos();
+        return responder(productoService.listarProductos(cursor, limite));
     }
 
     // GET /api/productos/{id} - Obtener producto por ID
@@ -40,19 +54,63 @@ public class ProductoController {
 
     // GET /api/productos/search/nombre - Buscar por nombre
     @GetMapping("/search/nombre")
-    public List<Producto> buscarPorNombre(@RequestParam String nombre) {
-        return productoService.buscarPorNombre(nombre);
+    public ResponseEntity<List<Producto>> buscarPorNombre(
+            @RequestParam String nombre,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limite) {
+        return responder(productoService.buscarPorNombre(nombre, cursor, limite));
     }
 
     // GET /api/productos/categoria/{categoriaId} - Productos por categoría
     @GetMapping("/categoria/{categoriaId}")
-    public List<Producto> productosPorCategoria(@PathVariable Long categoriaId) {
-        return productoService.productosPorCategoria(categoriaId);
+    public ResponseEntity<List<Producto>> productosPorCategoria(
+            @PathVariable Long categoriaId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limite) {
+        return responder(productoService.productosPorCategoria(categoriaId, cursor, limite));
+    }
+
+    // GET /api/productos/autocompletar?q=lap - Sugerencias locales (sin llamar a Gemini)
+    @GetMapping("/autocompletar")
+    public List<Autocompletado.Sugerencia> autocompletar(
+            @RequestParam String q,
+            @RequestParam(required = false) Integer limite) {
+        return productoService.autocompletar(q, limite);
     }
 
     // GET /api/productos/top - Productos más vendidos
     @GetMapping("/top/vendidos")
-    public List<Producto> productosTop() {
-        return productoService.productosTop();
+    public ResponseEntity<List<Producto>> productosTop(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limite) {
+        return responder(productoService.productosTop(cursor, limite));
+    }
+
+    // POST /api/productos/{id}/flash - Activar venta flash (stock en memoria)
+    @PostMapping("/{id}/flash")
+    public Map<String, Object> activarVentaFlash(@PathVariable Long id) {
+        return inventarioFlash.activar(id);
+    }
+
+    // DELETE /api/productos/{id}/flash - Terminar venta flash (vuelca el stock a la base)
+    @DeleteMapping("/{id}/flash")
+    public Map<String, String> desactivarVentaFlash(@PathVariable Long id) {
+        inventarioFlash.desactivar(id);
+        return Map.of("mensaje", "Venta flash finalizada");
+    }
+
+    // GET /api/productos/flash/estado - Contadores de las ventas flash activas
+    @GetMapping("/flash/estado")
+    public List<Map<String, Object>> estadoVentasFlash() {
+        return inventarioFlash.estado();
+    }
+
+    private ResponseEntity<List<Producto>> responder(ProductoService.PaginaProductos pagina) {
+        ResponseEntity.BodyBuilder respuesta = ResponseEntity.ok()
+                .header("X-Limite", String.valueOf(pagina.limite));
+        if (pagina.siguienteCursor != null) {
+            respuesta.header("X-Siguiente-Cursor", pagina.siguienteCursor);
+        }
+        return respuesta.body(pagina.productos);
     }
-}
\ No newline at end of file
+}
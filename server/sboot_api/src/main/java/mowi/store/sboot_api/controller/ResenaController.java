@@ -1,23 +1,53 @@
 package mowi.store.sboot_api.controller;
 
 import mowi.store.sboot_api.model.Resena;
+import mowi.store.sboot_api.repository.ResenaRepository;
+import mowi.store.sboot_api.service.CalificacionesProductos;
+import mowi.store.sboot_api.service.ProductoService;
 import mowi.store.sboot_api.service.ResenaService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import java.util.List;
 
 @RestController
 @RequestMapping("/api/resenas")
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = {"X-Siguiente-Cursor", "X-Limite"})
 public class ResenaController {
 
     @Autowired
     private ResenaService resenaService;
 
-    // GET /api/resenas/{productoId} - Obtener reseñas de un producto
+    // GET /api/resenas/{productoId}?orden=recientes|mejores|peores&cursor=...&limite=20 - Reseñas de un producto por páginas
     @GetMapping("/{productoId}")
-    public List<Resena> obtenerResenas(@PathVariable Long productoId) {
-        return resenaService.obtenerResenas(productoId);
+    public ResponseEntity<List<ResenaRepository.ResenaVista>> obtenerResenas(
+            @PathVariable Long productoId,
+            @RequestParam(required = false) String orden,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limite) {
+        ResenaService.PaginaResenas pagina = resenaService.listarResenas(productoId, orden, cursor, limite);
+        ResponseEntity.BodyBuilder respuesta = ResponseEntity.ok()
+                .header("X-Limite", String.valueOf(pagina.limite));
+        if (pagina.siguienteCursor != null) {
+            respuesta.header("X-Siguiente-Cursor", pagina.siguienteCursor);
+        }
+        return respuesta.body(pagina.resenas);
+    }
+
+    // GET /api/resenas/promedio/{productoId} - Promedio, total e histograma de estrellas
+    @GetMapping("/promedio/{productoId}")
+    public CalificacionesProductos.ResumenCalificaciones obtenerPromedio(@PathVariable Long productoId) {
+        return resenaService.obtenerCalificaciones(productoId);
+    }
+
+    // GET /api/resenas/promedios?productoIds=1,2,3 - Lo mismo para una página de productos
+    @GetMapping("/promedios")
+    public List<CalificacionesProductos.ResumenCalificaciones> obtenerPromedios(
+            @RequestParam List<Long> productoIds) {
+        if (productoIds.size() > ProductoService.LIMITE_MAXIMO) {
+            throw new RuntimeException("Máximo " + ProductoService.LIMITE_MAXIMO + " productos por consulta");
+        }
+        return resenaService.obtenerCalificaciones(productoIds);
     }
 
     // POST /api/resenas - Crear nueva reseña
@@ -27,7 +27,8 @@ public class Carrito {
     private LocalDateTime fechaActualizacion;
     // ----------------------------
 
-    @OneToMany(mappedBy = "carrito", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.EAGER)
+    // LAZY: cada caso de uso pide lo que necesita (ver CarritoRepository.findConItemsByUsuarioId)
+    @OneToMany(mappedBy = "carrito", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
     @JsonManagedReference
     private List<ItemCarrito> items;
 
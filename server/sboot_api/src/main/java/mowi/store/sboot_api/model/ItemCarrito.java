@@ -7,7 +7,9 @@ import com.fasterxml.jackson.annotation.JsonBackReference;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
 @Entity
-@Table(name = "mowi_dashboard_itemcarrito")
+@Table(name = "mowi_dashboard_itemcarrito",
+        uniqueConstraints = @UniqueConstraint(name = "uniq_item_carrito_producto",
+                columnNames = {"carrito_id", "producto_id"}))
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
 public class ItemCarrito {
 
@@ -15,12 +17,12 @@ public class ItemCarrito {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "carrito_id", nullable = false)
     @JsonBackReference
     private Carrito carrito;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "producto_id", nullable = false)
     private Producto producto;
 
@@ -5,7 +5,9 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "mowi_dashboard_pedido")
+@Table(name = "mowi_dashboard_pedido",
+        // Índice creado por la migración 0002 de Django; el historial pagina sobre él
+        indexes = @Index(name = "mowi_dashbo_usuario_b278bb_idx", columnList = "usuario_id, fecha_pedido"))
 public class Pedido {
 
     @Id
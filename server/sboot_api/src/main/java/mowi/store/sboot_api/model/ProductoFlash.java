@@ -0,0 +1,55 @@
+package mowi.store.sboot_api.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Producto en modo venta flash. Guarda la foto del stock al activarlo: con ella y
+ * los detalles de pedido posteriores se reconstruye el contador en memoria al reiniciar.
+ */
+@Entity
+@Table(name = "mowi_flash_producto")
+public class ProductoFlash {
+
+    @Id
+    @Column(name = "producto_id")
+    private Long productoId;
+
+    @Column(name = "stock_inicial", nullable = false)
+    private Integer stockInicial;
+
+    @Column(name = "vendidos_inicial", nullable = false)
+    private Integer vendidosInicial;
+
+    // Último detalle de pedido existente al activar; se cuentan los posteriores
+    @Column(name = "detalle_desde", nullable = false)
+    private Long detalleDesde;
+
+    @Column(name = "fecha_activacion", nullable = false)
+    private LocalDateTime fechaActivacion = LocalDateTime.now();
+
+    public ProductoFlash() {}
+
+    public ProductoFlash(Long productoId, Integer stockInicial, Integer vendidosInicial, Long detalleDesde) {
+        this.productoId = productoId;
+        this.stockInicial = stockInicial;
+        this.vendidosInicial = vendidosInicial;
+        this.detalleDesde = detalleDesde;
+    }
+
+    // Getters y Setters
+    public Long getProductoId() { return productoId; }
+    public void setProductoId(Long productoId) { this.productoId = productoId; }
+
+    public Integer getStockInicial() { return stockInicial; }
+    public void setStockInicial(Integer stockInicial) { this.stockInicial = stockInicial; }
+
+    public Integer getVendidosInicial() { return vendidosInicial; }
+    public void setVendidosInicial(Integer vendidosInicial) { this.vendidosInicial = vendidosInicial; }
+
+    public Long getDetalleDesde() { return detalleDesde; }
+    public void setDetalleDesde(Long detalleDesde) { this.detalleDesde = detalleDesde; }
+
+    public LocalDateTime getFechaActivacion() { return fechaActivacion; }
+    public void setFechaActivacion(LocalDateTime fechaActivacion) { this.fechaActivacion = fechaActivacion; }
+}
@@ -4,7 +4,11 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "mowi_dashboard_reseña")
+@Table(name = "mowi_dashboard_reseña", indexes = {
+        // Los crea la migración 0004 de Django; se declaran aquí para que el listado paginado se entienda
+        @Index(name = "resena_producto_fecha_idx", columnList = "producto_id, fecha_creacion"),
+        @Index(name = "resena_producto_calif_idx", columnList = "producto_id, calificacion, fecha_creacion")
+})
 public class Resena {
 
     @Id
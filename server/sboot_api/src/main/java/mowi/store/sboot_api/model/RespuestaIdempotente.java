@@ -0,0 +1,65 @@
+package mowi.store.sboot_api.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Respuesta guardada para una Idempotency-Key. Mientras la petición original se
+ * ejecuta queda EN_CURSO; al terminar bien se guarda la respuesta para repetirla
+ * en los reintentos sin volver a ejecutar el endpoint.
+ */
+@Entity
+@Table(name = "mowi_idempotencia")
+public class RespuestaIdempotente {
+
+    // Ruta + clave enviada por el cliente
+    @Id
+    @Column(length = 200)
+    private String clave;
+
+    // SHA-256 de la petición (método, ruta, parámetros y cuerpo)
+    @Column(nullable = false, length = 64)
+    private String huella;
+
+    @Column(nullable = false, length = 20)
+    private String estado; // EN_CURSO, COMPLETADA
+
+    private Integer status;
+
+    @Column(name = "content_type", length = 100)
+    private String contentType;
+
+    @Column(columnDefinition = "MEDIUMTEXT")
+    private String cuerpo;
+
+    @Column(name = "fecha_creacion", nullable = false)
+    private LocalDateTime fechaCreacion;
+
+    public RespuestaIdempotente() {}
+
+    public boolean completada() {
+        return "COMPLETADA".equals(estado);
+    }
+
+    // Getters y Setters
+    public String getClave() { return clave; }
+    public void setClave(String clave) { this.clave = clave; }
+
+    public String getHuella() { return huella; }
+    public void setHuella(String huella) { this.huella = huella; }
+
+    public String getEstado() { return estado; }
+    public void setEstado(String estado) { this.estado = estado; }
+
+    public Integer getStatus() { return status; }
+    public void setStatus(Integer status) { this.status = status; }
+
+    public String getContentType() { return contentType; }
+    public void setContentType(String contentType) { this.contentType = contentType; }
+
+    public String getCuerpo() { return cuerpo; }
+    public void setCuerpo(String cuerpo) { this.cuerpo = cuerpo; }
+
+    public LocalDateTime getFechaCreacion() { return fechaCreacion; }
+    public void setFechaCreacion(LocalDateTime fechaCreacion) { this.fechaCreacion = fechaCreacion; }
+}
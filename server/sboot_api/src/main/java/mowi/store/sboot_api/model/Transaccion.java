@@ -4,7 +4,10 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "transacciones")
+@Table(name = "transacciones", indexes = {
+        // Conciliación: pendientes por antigüedad
+        @Index(name = "idx_transaccion_estado_fecha", columnList = "estado, fecha_creacion")
+})
 public class Transaccion {
 
     @Id
@@ -29,7 +32,7 @@ public class Transaccion {
     @Column(nullable = true)
     private LocalDateTime fechaPago;
 
-    @Column(nullable = false)
+    @Column(name = "fecha_creacion", nullable = false)
     private LocalDateTime fechaCreacion;
 
     private String detalleError;  // Mensaje de error si falla
@@ -0,0 +1,157 @@
+package mowi.store.sboot_api.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Escrituras del carrito en una sola sentencia (sin cargar Carrito ni sus ítems).
+ */
+@Repository
+public class CarritoJdbcRepository {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Upsert de (carrito del usuario, producto): crea la línea o suma la cantidad, y
+     * recalcula el subtotal con el precio actual del producto. Usa la clave única
+     * uniq_item_carrito_producto.
+     *
+     * @return filas afectadas: 1 = línea nueva, 2 = línea existente actualizada,
+     *         0 = el usuario no tiene carrito o el producto no existe
+     */
+    public int agregarItem(Long usuarioId, Long productoId, int cantidad) {
+        return jdbcTemplate.update(
+                "INSERT INTO mowi_dashboard_itemcarrito " +
+                        "(carrito_id, producto_id, cantidad, subtotal, fecha_creacion, fecha_actualizacion) " +
+                        "SELECT c.id, p.id, ?, p.precio * ?, NOW(), NOW() " +
+                        "FROM mowi_dashboard_carrito c JOIN mowi_dashboard_producto p ON p.id = ? " +
+                        "WHERE c.usuario_id = ? ORDER BY c.id LIMIT 1 " +
+                        "ON DUPLICATE KEY UPDATE " +
+                        "mowi_dashboard_itemcarrito.cantidad = mowi_dashboard_itemcarrito.cantidad + ?, " +
+                        "mowi_dashboard_itemcarrito.subtotal = mowi_dashboard_itemcarrito.cantidad * p.precio, " +
+                        "mowi_dashboard_itemcarrito.fecha_actualizacion = NOW()",
+                cantidad, cantidad, productoId, usuarioId, cantidad);
+    }
+
+    /**
+     * Reemplaza las líneas de varios carritos a la vez (volcado del almacén en memoria):
+     * un DELETE para todos los carritos y un lote de INSERT con el subtotal calculado
+     * con el precio actual. Todo en una transacción.
+     */
+    @Transactional
+    public void reemplazarItems(Map<Long, Map<Long, Integer>> cantidadesPorCarrito) {
+        if (cantidadesPorCarrito.isEmpty()) {
+            return;
+        }
+        String marcadores = String.join(", ", Collections.nCopies(cantidadesPorCarrito.size(), "?"));
+        jdbcTemplate.update("DELETE FROM mowi_dashboard_itemcarrito WHERE carrito_id IN (" + marcadores + ")",
+                cantidadesPorCarrito.keySet().toArray());
+
+        List<Object[]> filas = new ArrayList<>();
+        cantidadesPorCarrito.forEach((carritoId, cantidades) -> cantidades.forEach((productoId, cantidad) ->
+                filas.add(new Object[]{carritoId, cantidad, cantidad, productoId})));
+        if (!filas.isEmpty()) {
+            jdbcTemplate.batchUpdate(
+                    "INSERT INTO mowi_dashboard_itemcarrito " +
+                            "(carrito_id, producto_id, cantidad, subtotal, fecha_creacion, fecha_actualizacion) " +
+                            "SELECT ?, p.id, ?, p.precio * ?, NOW(), NOW() " +
+                            "FROM mowi_dashboard_producto p WHERE p.id = ?",
+                    filas);
+        }
+    }
+
+    // ID del carrito del usuario; lo crea si no tiene (sin cargar la entidad Carrito)
+    public Long idCarritoOCrear(Long usuarioId) {
+        List<Long> ids = jdbcTemplate.queryForList(
+                "SELECT id FROM mowi_dashboard_carrito WHERE usuario_id = ? ORDER BY id LIMIT 1",
+                Long.class, usuarioId);
+        if (!ids.isEmpty()) {
+            return ids.get(0);
+        }
+        Timestamp ahora = Timestamp.valueOf(LocalDateTime.now());
+        KeyHolder clave = new GeneratedKeyHolder();
+        jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(
+                    "INSERT INTO mowi_dashboard_carrito (usuario_id, fecha_creacion, fecha_actualizacion) VALUES (?, ?, ?)",
+                    Statement.RETURN_GENERATED_KEYS);
+            ps.setLong(1, usuarioId);
+            ps.setTimestamp(2, ahora);
+            ps.setTimestamp(3, ahora);
+            return ps;
+        }, clave);
+        return clave.getKey().longValue();
+    }
+
+    // Un solo DELETE para varias líneas del carrito
+    public void eliminarItems(Long carritoId, Collection<Long> productoIds) {
+        if (productoIds.isEmpty()) {
+            return;
+        }
+        List<Object> parametros = new ArrayList<>();
+        parametros.add(carritoId);
+        parametros.addAll(productoIds);
+        jdbcTemplate.update(
+                "DELETE FROM mowi_dashboard_itemcarrito WHERE carrito_id = ? AND producto_id IN (" +
+                        String.join(", ", Collections.nCopies(productoIds.size(), "?")) + ")",
+                parametros.toArray());
+    }
+
+    /**
+     * Upsert en lote de varias líneas de un carrito. Con sumar = true la cantidad se
+     * suma a la existente (agregar); si no, la reemplaza (actualizar).
+     *
+     * @return IDs de los productos que no existen (sus líneas no se escribieron)
+     */
+    public List<Long> guardarItems(Long carritoId, Map<Long, Integer> cantidades, boolean sumar) {
+        List<Long> inexistentes = new ArrayList<>();
+        if (cantidades.isEmpty()) {
+            return inexistentes;
+        }
+        List<Map.Entry<Long, Integer>> lineas = new ArrayList<>(cantidades.entrySet());
+        String nuevaCantidad = sumar ? "cantidad + VALUES(cantidad)" : "VALUES(cantidad)";
+        int[][] resultados = jdbcTemplate.batchUpdate(
+                "INSERT INTO mowi_dashboard_itemcarrito " +
+                        "(carrito_id, producto_id, cantidad, subtotal, fecha_creacion, fecha_actualizacion) " +
+                        "SELECT ?, p.id, ?, p.precio * ?, NOW(), NOW() " +
+                        "FROM mowi_dashboard_producto p WHERE p.id = ? " +
+                        "ON DUPLICATE KEY UPDATE " +
+                        "mowi_dashboard_itemcarrito.cantidad = " + nuevaCantidad + ", " +
+                        "mowi_dashboard_itemcarrito.subtotal = mowi_dashboard_itemcarrito.cantidad * p.precio, " +
+                        "mowi_dashboard_itemcarrito.fecha_actualizacion = NOW()",
+                lineas,
+                lineas.size(),
+                (ps, linea) -> {
+                    ps.setLong(1, carritoId);
+                    ps.setInt(2, linea.getValue());
+                    ps.setInt(3, linea.getValue());
+                    ps.setLong(4, linea.getKey());
+                });
+
+        // 0 filas afectadas = el SELECT no encontró el producto
+        int i = 0;
+        for (int[] lote : resultados) {
+            for (int filas : lote) {
+                if (filas == 0) {
+                    inexistentes.add(lineas.get(i).getKey());
+                }
+                i++;
+            }
+        }
+        return inexistentes;
+    }
+}
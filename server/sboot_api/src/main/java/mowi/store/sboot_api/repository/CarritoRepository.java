@@ -1,6 +1,7 @@
 package mowi.store.sboot_api.repository;
 
 import mowi.store.sboot_api.model.Carrito;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 import java.util.Optional;
@@ -8,5 +9,10 @@ import java.util.Optional;
 @Repository
 public interface CarritoRepository extends JpaRepository<Carrito, Long> {
 
+    // Solo la fila del carrito (los ítems son LAZY)
     Optional<Carrito> findByUsuarioId(Long usuarioId);
+
+    // Vista del carrito: ítems, productos y categorías en una sola consulta con JOINs
+    @EntityGraph(attributePaths = {"items", "items.producto", "items.producto.categoria"})
+    Optional<Carrito> findConItemsByUsuarioId(Long usuarioId);
 }
@@ -2,11 +2,16 @@ package mowi.store.sboot_api.repository;
 
 import mowi.store.sboot_api.model.DetallePedido;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.util.List;
 
 @Repository
 public interface DetallePedidoRepository extends JpaRepository<DetallePedido, Long> {
 
-    List<DetallePedido> findByPedidoId(Long pedidoId);
+    // Detalle completo del pedido (pedido, productos y categorías) en una sola consulta
+    @Query("SELECT d FROM DetallePedido d JOIN FETCH d.pedido JOIN FETCH d.producto p " +
+            "LEFT JOIN FETCH p.categoria WHERE d.pedido.id = :pedidoId ORDER BY d.id")
+    List<DetallePedido> findByPedidoIdConProducto(@Param("pedidoId") Long pedidoId);
 }
@@ -1,7 +1,11 @@
 package mowi.store.sboot_api.repository;
 
 import mowi.store.sboot_api.model.ItemCarrito;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.util.List;
 import java.util.Optional;
@@ -11,7 +15,16 @@ public interface ItemCarritoRepository extends JpaRepository<ItemCarrito, Long>
 
     List<ItemCarrito> findByCarrito_Id(Long carritoId);
 
+    // Ítems con su producto en una sola consulta (checkout)
+    @Query("SELECT i FROM ItemCarrito i JOIN FETCH i.producto p LEFT JOIN FETCH p.categoria WHERE i.carrito.id = :carritoId")
+    List<ItemCarrito> findByCarritoIdConProducto(@Param("carritoId") Long carritoId);
+
+    // Con su producto: el ítem se devuelve como JSON
+    @EntityGraph(attributePaths = {"producto", "producto.categoria"})
     Optional<ItemCarrito> findByCarrito_IdAndProducto_Id(Long carritoId, Long productoId);
 
-    void deleteByCarrito_Id(Long carritoId);
+    // Vaciar el carrito de un usuario con un solo DELETE, sin cargarlo
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM ItemCarrito i WHERE i.carrito.id IN (SELECT c.id FROM Carrito c WHERE c.usuarioId = :usuarioId)")
+    void deleteByUsuarioId(@Param("usuarioId") Long usuarioId);
 }
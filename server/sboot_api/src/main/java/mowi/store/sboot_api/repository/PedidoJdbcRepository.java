@@ -0,0 +1,133 @@
+package mowi.store.sboot_api.repository;
+
+import mowi.store.sboot_api.model.ItemCarrito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * Escrituras del checkout en lote (JDBC).
+ *
+ * Las tablas las crea Django con AUTO_INCREMENT, así que con JPA (IDENTITY) cada
+ * detalle y cada producto sería un INSERT/UPDATE por separado. Aquí cada lote va
+ * en un solo viaje a la base de datos (rewriteBatchedStatements=true en la URL).
+ */
+@Repository
+public class PedidoJdbcRepository {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Un INSERT por línea del carrito, enviados juntos
+    public void insertarDetalles(Long pedidoId, List<ItemCarrito> items) {
+        Timestamp ahora = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO mowi_dashboard_detallepedido " +
+                        "(pedido_id, producto_id, cantidad, precio_unitario, fecha_creacion, fecha_actualizacion) " +
+                        "VALUES (?, ?, ?, ?, ?, ?)",
+                items,
+                items.size(),
+                (ps, item) -> {
+                    ps.setLong(1, pedidoId);
+                    ps.setLong(2, item.getProducto().getId());
+                    ps.setInt(3, item.getCantidad());
+                    ps.setBigDecimal(4, item.getProducto().getPrecio());
+                    ps.setTimestamp(5, ahora);
+                    ps.setTimestamp(6, ahora);
+                });
+    }
+
+    /**
+     * Reserva de stock atómica: un UPDATE condicional por producto, enviados en lote.
+     * La condición stock >= cantidad la evalúa MySQL sobre la fila, así dos compras
+     * simultáneas del mismo producto no pueden dejar stock negativo ni pisarse.
+     *
+     * Los productos se actualizan en orden de ID (TreeMap) para que dos checkouts
+     * bloqueen las filas en el mismo orden y no haya deadlocks.
+     *
+     * @return IDs de los productos sin stock suficiente (vacío si todo se reservó)
+     */
+    public List<Long> descontarStock(SortedMap<Long, Integer> cantidadPorProducto) {
+        List<Map.Entry<Long, Integer>> lineas = new ArrayList<>(cantidadPorProducto.entrySet());
+        Timestamp ahora = Timestamp.valueOf(LocalDateTime.now());
+        int[][] resultados = jdbcTemplate.batchUpdate(
+                "UPDATE mowi_dashboard_producto " +
+                        "SET stock = stock - ?, vendidos = vendidos + ?, fecha_actualizacion = ? " +
+                        "WHERE id = ? AND stock >= ?",
+                lineas,
+                lineas.size(),
+                (ps, linea) -> {
+                    ps.setInt(1, linea.getValue());
+                    ps.setInt(2, linea.getValue());
+                    ps.setTimestamp(3, ahora);
+                    ps.setLong(4, linea.getKey());
+                    ps.setInt(5, linea.getValue());
+                });
+
+        // 0 filas afectadas = la condición de stock no se cumplió
+        List<Long> sinStock = new ArrayList<>();
+        int i = 0;
+        for (int[] lote : resultados) {
+            for (int filas : lote) {
+                if (filas == 0) {
+                    sinStock.add(lineas.get(i).getKey());
+                }
+                i++;
+            }
+        }
+        return sinStock;
+    }
+
+    // ID del último detalle de pedido (0 si no hay ninguno)
+    public Long ultimoDetalleId() {
+        Long id = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(MAX(id), 0) FROM mowi_dashboard_detallepedido", Long.class);
+        return id != null ? id : 0L;
+    }
+
+    // Unidades vendidas de un producto en los detalles posteriores a detalleDesde
+    public int cantidadVendidaDesde(Long productoId, Long detalleDesde) {
+        Integer cantidad = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(cantidad), 0) FROM mowi_dashboard_detallepedido " +
+                        "WHERE producto_id = ? AND id > ?",
+                Integer.class, productoId, detalleDesde);
+        return cantidad != null ? cantidad : 0;
+    }
+
+    /**
+     * Escribe valores absolutos de stock y vendidos (volcado de la venta flash).
+     * Al no ser incrementos, repetir un volcado no descuadra nada.
+     */
+    public void escribirStock(List<StockProducto> filas) {
+        Timestamp ahora = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(
+                "UPDATE mowi_dashboard_producto SET stock = ?, vendidos = ?, fecha_actualizacion = ? WHERE id = ?",
+                filas,
+                filas.size(),
+                (ps, fila) -> {
+                    ps.setInt(1, fila.stock);
+                    ps.setInt(2, fila.vendidos);
+                    ps.setTimestamp(3, ahora);
+                    ps.setLong(4, fila.productoId);
+                });
+    }
+
+    public static class StockProducto {
+        public Long productoId;
+        public int stock;
+        public int vendidos;
+
+        public StockProducto(Long productoId, int stock, int vendidos) {
+            this.productoId = productoId;
+            this.stock = stock;
+            this.vendidos = vendidos;
+        }
+    }
+}
@@ -1,12 +1,66 @@
 package mowi.store.sboot_api.repository;
 
 import mowi.store.sboot_api.model.Pedido;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface PedidoRepository extends JpaRepository<Pedido, Long> {
 
-    List<Pedido> findByUsuarioId(Long usuarioId);
+    // Historial paginado (índice usuario_id, fecha_pedido): primera página
+    @Query("SELECT p.id AS id, p.total AS total, p.estado AS estado, p.metodoPago AS metodoPago, " +
+            "p.fechaPedido AS fechaPedido, " +
+            "(SELECT COUNT(d) FROM DetallePedido d WHERE d.pedido.id = p.id) AS cantidadItems " +
+            "FROM Pedido p WHERE p.usuarioId = :usuarioId " +
+            "ORDER BY p.fechaPedido DESC, p.id DESC")
+    List<ResumenPedido> findResumenes(@Param("usuarioId") Long usuarioId, Pageable pagina);
+
+    // Historial paginado: páginas siguientes, después de (fecha, id) del cursor
+    @Query("SELECT p.id AS id, p.total AS total, p.estado AS estado, p.metodoPago AS metodoPago, " +
+            "p.fechaPedido AS fechaPedido, " +
+            "(SELECT COUNT(d) FROM DetallePedido d WHERE d.pedido.id = p.id) AS cantidadItems " +
+            "FROM Pedido p WHERE p.usuarioId = :usuarioId " +
+            "AND (p.fechaPedido < :fecha OR (p.fechaPedido = :fecha AND p.id < :id)) " +
+            "ORDER BY p.fechaPedido DESC, p.id DESC")
+    List<ResumenPedido> findResumenesDespuesDe(@Param("usuarioId") Long usuarioId,
+                                               @Param("fecha") LocalDateTime fecha,
+                                               @Param("id") Long id,
+                                               Pageable pagina);
+
+    // Pasa el pedido a otro estado solo si sigue pendiente (pago confirmado más de una vez)
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Pedido p SET p.estado = :estado, p.fechaActualizacion = :fecha " +
+            "WHERE p.id = :id AND UPPER(p.estado) = 'PENDIENTE'")
+    int actualizarEstadoSiPendiente(@Param("id") Long id,
+                                    @Param("estado") String estado,
+                                    @Param("fecha") LocalDateTime fecha);
+
+    // Lo mismo para varios pedidos (conciliación de pagos)
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Pedido p SET p.estado = :estado, p.fechaActualizacion = :fecha " +
+            "WHERE p.id IN :ids AND UPPER(p.estado) = 'PENDIENTE'")
+    int actualizarEstadosSiPendientes(@Param("ids") Collection<Long> ids,
+                                      @Param("estado") String estado,
+                                      @Param("fecha") LocalDateTime fecha);
+
+    @Query("SELECT DISTINCT p.usuarioId FROM Pedido p WHERE p.id IN :ids")
+    List<Long> findUsuarioIds(@Param("ids") Collection<Long> ids);
+
+    // Resumen liviano de un pedido para el historial
+    interface ResumenPedido {
+        Long getId();
+        BigDecimal getTotal();
+        String getEstado();
+        String getMetodoPago();
+        LocalDateTime getFechaPedido();
+        Long getCantidadItems();
+    }
 }
@@ -0,0 +1,9 @@
+package mowi.store.sboot_api.repository;
+
+import mowi.store.sboot_api.model.ProductoFlash;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ProductoFlashRepository extends JpaRepository<ProductoFlash, Long> {
+}
@@ -7,6 +7,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
@@ -14,15 +15,22 @@ public interface ProductoRepository extends JpaRepository<Producto, Long> {
 
     List<Producto> findByCategoria(Categoria categoria);
 
-    @Query("SELECT p FROM Producto p WHERE p.nombre LIKE %:nombre% AND p.activo = true")
-    List<Producto> buscarPorNombre(@Param("nombre") String nombre);
-
     @Query("SELECT p FROM Producto p WHERE p.activo = true ORDER BY p.vendidos DESC")
     List<Producto> findProductosActivos();
 
     @Query("SELECT p FROM Producto p WHERE p.categoria.id = :categoriaId AND p.activo = true")
     List<Producto> findByCategoria(@Param("categoriaId") Long categoriaId);
 
-    @Query("SELECT p FROM Producto p WHERE p.nombre LIKE %:busqueda% OR p.categoria.nombre LIKE %:busqueda%")
-    List<Producto> buscar(@Param("busqueda") String busqueda);
+    // Carga completa del catálogo con su categoría en una sola consulta (snapshot en memoria)
+    @Query("SELECT p FROM Producto p LEFT JOIN FETCH p.categoria")
+    List<Producto> findAllConCategoria();
+
+    // Marca de versión del catálogo: cambia con cualquier alta, baja o edición (auto_now de Django)
+    @Query("SELECT COUNT(p) AS total, MAX(p.fechaActualizacion) AS ultimaActualizacion FROM Producto p")
+    VersionCatalogo obtenerVersionCatalogo();
+
+    interface VersionCatalogo {
+        Long getTotal();
+        LocalDateTime getUltimaActualizacion();
+    }
 }
\ No newline at end of file
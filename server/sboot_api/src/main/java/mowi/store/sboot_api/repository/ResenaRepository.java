@@ -1,12 +1,83 @@
 package mowi.store.sboot_api.repository;
 
 import mowi.store.sboot_api.model.Resena;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
 public interface ResenaRepository extends JpaRepository<Resena, Long> {
 
-    List<Resena> findByProductoId(Long productoId);
+    /*
+     * Listado paginado por cursor (keyset). Las tres consultas reciben la posición
+     * de la última reseña ya enviada; para la primera página el servicio pasa valores
+     * que quedan antes de cualquier fila. Devuelven ResenaVista: solo columnas de la
+     * reseña, sin JOIN ni producto embebido.
+     */
+
+    // Más recientes primero (índice producto_id, fecha_creacion)
+    @Query("SELECT r.id AS id, r.usuarioId AS usuarioId, r.producto.id AS productoId, " +
+            "r.calificacion AS calificacion, r.comentario AS comentario, " +
+            "r.fechaCreacion AS fechaCreacion, r.fechaActualizacion AS fechaActualizacion " +
+            "FROM Resena r WHERE r.producto.id = :productoId " +
+            "AND (r.fechaCreacion < :fecha OR (r.fechaCreacion = :fecha AND r.id < :id)) " +
+            "ORDER BY r.fechaCreacion DESC, r.id DESC")
+    List<ResenaVista> findRecientes(@Param("productoId") Long productoId,
+                                    @Param("fecha") LocalDateTime fecha,
+                                    @Param("id") Long id,
+                                    Pageable pagina);
+
+    // Mejor calificadas primero; a igual calificación, las más recientes
+    @Query("SELECT r.id AS id, r.usuarioId AS usuarioId, r.producto.id AS productoId, " +
+            "r.calificacion AS calificacion, r.comentario AS comentario, " +
+            "r.fechaCreacion AS fechaCreacion, r.fechaActualizacion AS fechaActualizacion " +
+            "FROM Resena r WHERE r.producto.id = :productoId " +
+            "AND (r.calificacion < :calificacion OR (r.calificacion = :calificacion AND " +
+            "(r.fechaCreacion < :fecha OR (r.fechaCreacion = :fecha AND r.id < :id)))) " +
+            "ORDER BY r.calificacion DESC, r.fechaCreacion DESC, r.id DESC")
+    List<ResenaVista> findMejores(@Param("productoId") Long productoId,
+                                  @Param("calificacion") Integer calificacion,
+                                  @Param("fecha") LocalDateTime fecha,
+                                  @Param("id") Long id,
+                                  Pageable pagina);
+
+    // Peor calificadas primero; a igual calificación, las más recientes
+    @Query("SELECT r.id AS id, r.usuarioId AS usuarioId, r.producto.id AS productoId, " +
+            "r.calificacion AS calificacion, r.comentario AS comentario, " +
+            "r.fechaCreacion AS fechaCreacion, r.fechaActualizacion AS fechaActualizacion " +
+            "FROM Resena r WHERE r.producto.id = :productoId " +
+            "AND (r.calificacion > :calificacion OR (r.calificacion = :calificacion AND " +
+            "(r.fechaCreacion < :fecha OR (r.fechaCreacion = :fecha AND r.id < :id)))) " +
+            "ORDER BY r.calificacion ASC, r.fechaCreacion DESC, r.id DESC")
+    List<ResenaVista> findPeores(@Param("productoId") Long productoId,
+                                 @Param("calificacion") Integer calificacion,
+                                 @Param("fecha") LocalDateTime fecha,
+                                 @Param("id") Long id,
+                                 Pageable pagina);
+
+    // Conteo de reseñas por producto y calificación (base de los agregados en memoria)
+    @Query("SELECT r.producto.id AS productoId, r.calificacion AS calificacion, COUNT(r) AS cantidad " +
+            "FROM Resena r GROUP BY r.producto.id, r.calificacion")
+    List<ConteoCalificacion> contarPorProductoYCalificacion();
+
+    // Reseña tal como sale en el listado (productoId en lugar del producto completo)
+    interface ResenaVista {
+        Long getId();
+        Long getUsuarioId();
+        Long getProductoId();
+        Integer getCalificacion();
+        String getComentario();
+        LocalDateTime getFechaCreacion();
+        LocalDateTime getFechaActualizacion();
+    }
+
+    interface ConteoCalificacion {
+        Long getProductoId();
+        Integer getCalificacion();
+        Long getCantidad();
+    }
 }
@@ -0,0 +1,52 @@
+package mowi.store.sboot_api.repository;
+
+import mowi.store.sboot_api.model.RespuestaIdempotente;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.LocalDateTime;
+
+@Repository
+public interface RespuestaIdempotenteRepository extends JpaRepository<RespuestaIdempotente, String> {
+
+    // Reserva la clave: 1 si esta petición es la primera, 0 si ya existía (la PK decide, también entre instancias)
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO mowi_idempotencia (clave, huella, estado, fecha_creacion) " +
+            "VALUES (:clave, :huella, 'EN_CURSO', :fecha)", nativeQuery = true)
+    int reservar(@Param("clave") String clave, @Param("huella") String huella, @Param("fecha") LocalDateTime fecha);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE RespuestaIdempotente r SET r.estado = 'COMPLETADA', r.status = :status, " +
+            "r.contentType = :contentType, r.cuerpo = :cuerpo WHERE r.clave = :clave")
+    int completar(@Param("clave") String clave, @Param("status") Integer status,
+                  @Param("contentType") String contentType, @Param("cuerpo") String cuerpo);
+
+    /*
+     * Reserva abandonada (el servidor cayó a mitad de la petición): el reintento con la
+     * misma petición se queda con la clave. Solo uno gana: los demás ya ven la fecha nueva.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE RespuestaIdempotente r SET r.fechaCreacion = :ahora WHERE r.clave = :clave " +
+            "AND r.huella = :huella AND r.estado = 'EN_CURSO' AND r.fechaCreacion < :abandonadaAntesDe")
+    int reclamar(@Param("clave") String clave, @Param("huella") String huella,
+                 @Param("ahora") LocalDateTime ahora, @Param("abandonadaAntesDe") LocalDateTime abandonadaAntesDe);
+
+    // La petición falló: se libera la clave para que el reintento se ejecute de verdad
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM RespuestaIdempotente r WHERE r.clave = :clave AND r.estado = 'EN_CURSO'")
+    int liberar(@Param("clave") String clave);
+
+    // Respuestas vencidas y reservas abandonadas (el servidor cayó a mitad de la petición)
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM RespuestaIdempotente r WHERE r.fechaCreacion < :vencidas " +
+            "OR (r.estado = 'EN_CURSO' AND r.fechaCreacion < :abandonadas)")
+    int borrarVencidas(@Param("vencidas") LocalDateTime vencidas, @Param("abandonadas") LocalDateTime abandonadas);
+}
@@ -1,8 +1,17 @@
 package mowi.store.sboot_api.repository;
 
+import jakarta.persistence.LockModeType;
 import mowi.store.sboot_api.model.Transaccion;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -11,6 +20,57 @@ public interface TransaccionRepository extends JpaRepository<Transaccion, Long>
     // Buscar por ID de Stripe
     Optional<Transaccion> findByStripePaymentIntentId(String stripePaymentIntentId);
 
-    // Buscar por ID de Pedido
-    Optional<Transaccion> findByPedidoId(Long pedidoId);
+    // Última transacción del pedido (puede tener varias si se reintentó el pago)
+    Optional<Transaccion> findFirstByPedidoIdOrderByIdDesc(Long pedidoId);
+
+    /**
+     * Cambio de estado idempotente: EXITOSO es final y repetir el mismo estado no hace nada.
+     * Devuelve 1 si la transacción cambió, 0 si ya estaba así (evento repetido o atrasado).
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Transaccion t SET t.estado = :estado, t.fechaPago = :fechaPago, t.detalleError = :detalleError " +
+            "WHERE t.stripePaymentIntentId = :paymentIntentId AND t.estado <> 'EXITOSO' AND t.estado <> :estado")
+    int cambiarEstado(@Param("paymentIntentId") String paymentIntentId,
+                      @Param("estado") String estado,
+                      @Param("fechaPago") LocalDateTime fechaPago,
+                      @Param("detalleError") String detalleError);
+
+    // Varias de una vez (conciliación), bloqueadas hasta el fin de la transacción para que
+    // un webhook no las cambie entre esta lectura y el UPDATE del lote
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<Transaccion> findByStripePaymentIntentIdIn(Collection<String> paymentIntentIds);
+
+    // Lo mismo que cambiarEstado() para un lote de Payment Intents con el mismo estado destino
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Transaccion t SET t.estado = :estado, t.fechaPago = :fechaPago, t.detalleError = :detalleError " +
+            "WHERE t.stripePaymentIntentId IN :paymentIntentIds AND t.estado <> 'EXITOSO' AND t.estado <> :estado")
+    int cambiarEstados(@Param("paymentIntentIds") Collection<String> paymentIntentIds,
+                       @Param("estado") String estado,
+                       @Param("fechaPago") LocalDateTime fechaPago,
+                       @Param("detalleError") String detalleError);
+
+    // Sin resolver y sin Payment Intent (abandono en la conciliación), bloqueadas como las de arriba
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT t FROM Transaccion t WHERE t.id IN :ids AND t.stripePaymentIntentId IS NULL " +
+            "AND t.estado IN ('PENDIENTE', 'PROCESANDO')")
+    List<Transaccion> findSinPaymentIntentSinResolver(@Param("ids") Collection<Long> ids);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Transaccion t SET t.estado = 'FALLIDO', t.detalleError = :detalleError " +
+            "WHERE t.id IN :ids AND t.stripePaymentIntentId IS NULL AND t.estado IN ('PENDIENTE', 'PROCESANDO')")
+    int abandonarSinPaymentIntent(@Param("ids") Collection<Long> ids, @Param("detalleError") String detalleError);
+
+    // Sin resolver, de la más antigua a la más nueva, por páginas (índice estado, fecha_creacion)
+    @Query("SELECT t FROM Transaccion t WHERE t.estado IN :estados AND t.fechaCreacion < :hasta " +
+            "AND (t.fechaCreacion > :fecha OR (t.fechaCreacion = :fecha AND t.id > :id)) " +
+            "ORDER BY t.fechaCreacion, t.id")
+    List<Transaccion> findSinResolverDespuesDe(@Param("estados") Collection<String> estados,
+                                               @Param("hasta") LocalDateTime hasta,
+                                               @Param("fecha") LocalDateTime fecha,
+                                               @Param("id") Long id,
+                                               Pageable pagina);
+
+    // Fecha de la transacción sin resolver más antigua (retraso de la conciliación)
+    @Query("SELECT MIN(t.fechaCreacion) FROM Transaccion t WHERE t.estado IN :estados")
+    LocalDateTime findFechaMasAntigua(@Param("estados") Collection<String> estados);
 }
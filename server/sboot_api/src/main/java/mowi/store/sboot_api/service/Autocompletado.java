@@ -0,0 +1,133 @@
+package mowi.store.sboot_api.service;
+
+import mowi.store.sboot_api.model.Categoria;
+import mowi.store.sboot_api.model.Producto;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Autocompletado local sobre nombres de productos y categorías.
+ *
+ * Se arma un trie (árbol de prefijos) con cada palabra inicial de los nombres
+ * ya normalizados, de modo que "len" sugiere "Laptop Lenovo". Cada nodo guarda
+ * sus mejores sugerencias precalculadas (por vendidos), así una consulta solo
+ * recorre tantos nodos como letras tenga el prefijo.
+ */
+@Component
+public class Autocompletado {
+
+    // Máximo de sugerencias guardadas por nodo
+    public static final int MAX_SUGERENCIAS = 10;
+
+    private static final Comparator<Sugerencia> POR_PESO =
+            Comparator.comparingLong((Sugerencia s) -> s.peso).reversed()
+                    .thenComparing(s -> s.texto);
+
+    private volatile Nodo raiz = new Nodo();
+
+    /**
+     * Sugerencias para un prefijo. Nunca sale a la red ni a la base de datos.
+     */
+    public List<Sugerencia> sugerir(String prefijo, int limite) {
+        String clave = normalizar(prefijo);
+        if (clave.isEmpty()) {
+            return List.of();
+        }
+        Nodo nodo = raiz;
+        for (int i = 0; i < clave.length() && nodo != null; i++) {
+            nodo = nodo.hijos.get(clave.charAt(i));
+        }
+        if (nodo == null) {
+            return List.of();
+        }
+        return nodo.mejores.subList(0, Math.min(limite, nodo.mejores.size()));
+    }
+
+    /**
+     * Arma un trie nuevo con el catálogo y lo publica de una vez (las consultas
+     * en curso siguen usando el anterior).
+     */
+    public void reconstruir(Collection<Producto> productos) {
+        Map<Long, Sugerencia> categorias = new HashMap<>();
+        List<Sugerencia> entradas = new ArrayList<>();
+
+        for (Producto p : productos) {
+            if (!Boolean.TRUE.equals(p.getActivo())) {
+                continue;
+            }
+            long vendidos = p.getVendidos() != null ? p.getVendidos() : 0;
+            entradas.add(new Sugerencia(p.getNombre(), "PRODUCTO", p.getId(), vendidos));
+
+            // El peso de una categoría es la suma de vendidos de sus productos
+            Categoria c = p.getCategoria();
+            if (c != null) {
+                categorias.computeIfAbsent(c.getId(),
+                        id -> new Sugerencia(c.getNombre(), "CATEGORIA", id, 0)).peso += vendidos;
+            }
+        }
+        entradas.addAll(categorias.values());
+
+        Nodo nuevaRaiz = new Nodo();
+        for (Sugerencia s : entradas) {
+            insertar(nuevaRaiz, s);
+        }
+        nuevaRaiz.podar();
+        raiz = nuevaRaiz;
+    }
+
+    private void insertar(Nodo raiz, Sugerencia s) {
+        String texto = normalizar(s.texto);
+        // Se inserta desde el inicio de cada palabra
+        for (int inicio = 0; inicio < texto.length(); inicio++) {
+            if (inicio > 0 && texto.charAt(inicio - 1) != ' ') {
+                continue;
+            }
+            Nodo nodo = raiz;
+            for (int i = inicio; i < texto.length(); i++) {
+                nodo = nodo.hijos.computeIfAbsent(texto.charAt(i), k -> new Nodo());
+                nodo.agregar(s);
+            }
+        }
+    }
+
+    // Mismo criterio que el índice de búsqueda: minúsculas, sin tildes, palabras separadas por un espacio
+    private static String normalizar(String texto) {
+        return String.join(" ", IndiceBusqueda.tokenizar(texto));
+    }
+
+    private static class Nodo {
+        final Map<Character, Nodo> hijos = new HashMap<>();
+        List<Sugerencia> mejores = new ArrayList<>();
+
+        void agregar(Sugerencia s) {
+            // La misma entrada puede llegar dos veces al nodo si repite palabras
+            if (mejores.isEmpty() || mejores.get(mejores.size() - 1) != s) {
+                mejores.add(s);
+            }
+        }
+
+        // Deja solo las mejores sugerencias en cada nodo (inmutables)
+        void podar() {
+            mejores.sort(POR_PESO);
+            mejores = List.copyOf(mejores.subList(0, Math.min(MAX_SUGERENCIAS, mejores.size())));
+            for (Nodo hijo : hijos.values()) {
+                hijo.podar();
+            }
+        }
+    }
+
+    public static class Sugerencia {
+        public String texto;
+        public String tipo;   // PRODUCTO o CATEGORIA
+        public Long id;
+        public long peso;
+
+        public Sugerencia(String texto, String tipo, Long id, long peso) {
+            this.texto = texto;
+            this.tipo = tipo;
+            this.id = id;
+            this.peso = peso;
+        }
+    }
+}
@@ -1,131 +1,176 @@
 package mowi.store.sboot_api.service;
 
 import mowi.store.sboot_api.model.Producto;
-import mowi.store.sboot_api.repository.ProductoRepository;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Service
 public class BuscaGeminiService {
 
+    // Resultados devueltos cuando Gemini no responde y se usa la búsqueda local
+    private static final int MAX_RESULTADOS_LOCALES = 10;
+
+    @Autowired
+    private SeleccionCandidatos seleccionCandidatos;
+
     @Autowired
-    private ProductoRepository productoRepository;
+    private CatalogoCache catalogoCache;
 
     @Autowired
-    private RestTemplate restTemplate;
+    private CacheBusquedaGemini cacheBusqueda;
 
-    @Value("${gemini.api.key}")
-    private String geminiApiKey;
+    @Autowired
+    private GeminiClient geminiClient;
 
-    // ✅ MODELO VERIFICADO QUE FUNCIONA: gemini-2.0-flash
-    // Lista completa: https://ai.google.dev/gemini-api/docs/models/gemini
-    private static final String GEMINI_API_URL =
-            "https://generativelanguage.googleapis.com/v1beta/models/gemini-2.0-flash:generateContent";
+    @Autowired
+    private ProductoService productoService;
 
     /**
      * Búsqueda con Gemini AI - usando modelo verificado
+     *
+     * Solo los candidatos preseleccionados localmente (SeleccionCandidatos) van en el
+     * prompt, así el tamaño del prompt no crece con el catálogo. La llamada al modelo
+     * es asíncrona; si Gemini está lento, saturado o caído, se responde con la
+     * búsqueda local en lugar de un error.
      */
-    public BuscaGeminiResponse buscarConGemini(String consulta) {
+    public CompletableFuture<BuscaGeminiResponse> buscarConGemini(String consulta) {
         try {
-            List<Producto> todosProductos = productoRepository.findAll();
+            // Consultas repetidas (o equivalentes) con el mismo catálogo no vuelven a llamar a Gemini
+            CatalogoCache.Snapshot catalogo = catalogoCache.actual();
+            Optional<CacheBusquedaGemini.Entrada> cacheada =
+                    cacheBusqueda.obtener(consulta, catalogo.getFirmaContenido());
+            if (cacheada.isPresent()) {
+                List<Producto> resultados = new ArrayList<>();
+                for (Long id : cacheada.get().productoIds) {
+                    catalogo.porId(id).ifPresent(resultados::add);
+                }
+                return CompletableFuture.completedFuture(new BuscaGeminiResponse(
+                        consulta,
+                        resultados,
+                        cacheada.get().razonamiento,
+                        "✅ Búsqueda realizada con Gemini AI (gemini-2.0-flash) - desde caché"
+                ));
+            }
 
-            if (todosProductos.isEmpty()) {
-                return new BuscaGeminiResponse(
+            List<Producto> candidatos = seleccionCandidatos.seleccionar(consulta).candidatos;
+
+            if (candidatos.isEmpty()) {
+                return CompletableFuture.completedFuture(new BuscaGeminiResponse(
                         consulta,
                         new ArrayList<>(),
                         null,
-                        "⚠️ No hay productos en la base de datos"
-                );
+                        "⚠️ No hay productos que coincidan con la búsqueda"
+                ));
             }
 
-            String datosProductos = formatearProductosParaGemini(todosProductos);
-            String respuestaGemini = llamarGemini(consulta, datosProductos);
-            List<Producto> resultados = extraerProductosDeLaRespuesta(respuestaGemini, todosProductos);
+            String prompt = construirPrompt(consulta, formatearProductosParaGemini(candidatos));
 
-            return new BuscaGeminiResponse(
-                    consulta,
-                    resultados,
-                    respuestaGemini,
-                    "✅ Búsqueda realizada con Gemini AI (gemini-2.0-flash)"
-            );
+            return geminiClient.generarContenido(prompt)
+                    .thenApply(respuestaGemini -> {
+                        System.out.println("📝 Respuesta: " + respuestaGemini);
+                        List<Producto> resultados = extraerProductosDeLaRespuesta(respuestaGemini, candidatos);
+
+                        cacheBusqueda.guardar(consulta, catalogo.getFirmaContenido(),
+                                resultados.stream().map(Producto::getId).collect(Collectors.toList()),
+                                respuestaGemini);
+
+                        return new BuscaGeminiResponse(
+                                consulta,
+                                resultados,
+                                respuestaGemini,
+                                "✅ Búsqueda realizada con Gemini AI (gemini-2.0-flash)"
+                        );
+                    })
+                    .exceptionally(e -> busquedaLocal(consulta, candidatos, e));
 
         } catch (Exception e) {
             e.printStackTrace();
-            return new BuscaGeminiResponse(
+            return CompletableFuture.completedFuture(new BuscaGeminiResponse(
                     consulta,
                     new ArrayList<>(),
                     null,
                     "❌ Error: " + e.getMessage()
-            );
+            ));
         }
     }
 
+    // Plan B: los candidatos locales mejor puntuados (no se guardan en caché)
+    private BuscaGeminiResponse busquedaLocal(String consulta, List<Producto> candidatos, Throwable causa) {
+        Throwable raiz = causa.getCause() != null ? causa.getCause() : causa;
+        System.out.println("⚠️ Usando búsqueda local: " + raiz.getMessage());
+        BuscaGeminiResponse respuesta = new BuscaGeminiResponse(
+                consulta,
+                new ArrayList<>(candidatos.subList(0, Math.min(MAX_RESULTADOS_LOCALES, candidatos.size()))),
+                null,
+                "⚠️ Gemini no disponible, resultados de búsqueda local"
+        );
+        respuesta.tipo = "LOCAL";
+        return respuesta;
+    }
+
     /**
-     * Llamar a Gemini con modelo verificado
+     * Variante en streaming de buscarConGemini():
+     * 1. Entrega de inmediato los candidatos locales (oyente.candidatosLocales).
+     * 2. Entrega cada producto elegido por Gemini en cuanto su ID llega en el stream.
+     * El futuro termina con la respuesta completa (o la búsqueda local si Gemini falla).
      */
-    private String llamarGemini(String consulta, String datosProductos) {
-        try {
-            String prompt = construirPrompt(consulta, datosProductos);
-
-            Map<String, Object> requestBody = new HashMap<>();
-            Map<String, Object> content = new HashMap<>();
-            List<Map<String, String>> parts = new ArrayList<>();
-
-            Map<String, String> part = new HashMap<>();
-            part.put("text", prompt);
-            parts.add(part);
-
-            content.put("parts", parts);
-            List<Map<String, Object>> contents = new ArrayList<>();
-            contents.add(content);
-            requestBody.put("contents", contents);
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
-            String url = GEMINI_API_URL + "?key=" + geminiApiKey;
-
-            System.out.println("🔍 Llamando a Gemini: " + url.replace(geminiApiKey, "***KEY***"));
-
-            Map<String, Object> response = restTemplate.postForObject(url, entity, Map.class);
-
-            System.out.println("✅ Respuesta de Gemini recibida");
+    public CompletableFuture<BuscaGeminiResponse> buscarConGeminiStream(String consulta, OyenteBusqueda oyente) {
+        CatalogoCache.Snapshot catalogo = catalogoCache.actual();
+        List<Producto> candidatos = seleccionCandidatos.seleccionar(consulta).candidatos;
+        oyente.candidatosLocales(candidatos.subList(0, Math.min(MAX_RESULTADOS_LOCALES, candidatos.size())));
+
+        Optional<CacheBusquedaGemini.Entrada> cacheada =
+                cacheBusqueda.obtener(consulta, catalogo.getFirmaContenido());
+        if (cacheada.isPresent()) {
+            List<Producto> resultados = new ArrayList<>();
+            for (Long id : cacheada.get().productoIds) {
+                catalogo.porId(id).ifPresent(p -> {
+                    resultados.add(p);
+                    oyente.productoGemini(p);
+                });
+            }
+            return CompletableFuture.completedFuture(new BuscaGeminiResponse(
+                    consulta, resultados, cacheada.get().razonamiento,
+                    "✅ Búsqueda realizada con Gemini AI (gemini-2.0-flash) - desde caché"));
+        }
 
-            if (response != null && response.containsKey("candidates")) {
-                List<Map<String, Object>> candidates = (List<Map<String, Object>>) response.get("candidates");
-                if (!candidates.isEmpty()) {
-                    Map<String, Object> candidate = candidates.get(0);
+        if (candidatos.isEmpty()) {
+            return CompletableFuture.completedFuture(new BuscaGeminiResponse(
+                    consulta, new ArrayList<>(), null, "⚠️ No hay productos que coincidan con la búsqueda"));
+        }
 
-                    if (candidate.containsKey("content")) {
-                        Map<String, Object> content_resp = (Map<String, Object>) candidate.get("content");
-                        if (content_resp != null && content_resp.containsKey("parts")) {
-                            List<Map<String, Object>> parts_resp = (List<Map<String, Object>>) content_resp.get("parts");
-                            if (!parts_resp.isEmpty()) {
-                                String texto = (String) parts_resp.get(0).get("text");
-                                System.out.println("📝 Respuesta: " + texto);
-                                return texto;
-                            }
-                        }
-                    }
-                }
-            }
+        List<Producto> resultados = Collections.synchronizedList(new ArrayList<>());
+        LectorIds lector = new LectorIds(candidatos, p -> {
+            resultados.add(p);
+            oyente.productoGemini(p);
+        });
+
+        String prompt = construirPrompt(consulta, formatearProductosParaGemini(candidatos));
+        return geminiClient.generarContenidoStream(prompt, lector::leer)
+                .thenApply(respuestaGemini -> {
+                    lector.terminar();
+                    List<Producto> finales = new ArrayList<>(resultados);
+                    cacheBusqueda.guardar(consulta, catalogo.getFirmaContenido(),
+                            finales.stream().map(Producto::getId).collect(Collectors.toList()),
+                            respuestaGemini);
+                    return new BuscaGeminiResponse(consulta, finales, respuestaGemini,
+                            "✅ Búsqueda realizada con Gemini AI (gemini-2.0-flash)");
+                })
+                .exceptionally(e -> busquedaLocal(consulta, candidatos, e));
+    }
 
-            return "";
+    /**
+     * Recibe los resultados parciales de buscarConGeminiStream().
+     */
+    public interface OyenteBusqueda {
+        void candidatosLocales(List<Producto> productos);
 
-        } catch (Exception e) {
-            System.out.println("❌ Error: " + e.getMessage());
-            e.printStackTrace();
-            throw new RuntimeException("Error llamando a Gemini: " + e.getMessage());
-        }
+        void productoGemini(Producto producto);
     }
 
     private String construirPrompt(String consulta, String datosProductos) {
@@ -148,52 +193,121 @@ public class BuscaGeminiService {
         return sb.toString();
     }
 
-    private List<Producto> extraerProductosDeLaRespuesta(String respuesta, List<Producto> todosProductos) {
+    /**
+     * Convierte la respuesta de Gemini ("1, 5, 12") en productos.
+     * Recorre el texto una sola vez acumulando dígitos (sin regex ni split) y
+     * resuelve cada ID en O(1) entre los candidatos que se mandaron en el prompt.
+     */
+    static List<Producto> extraerProductosDeLaRespuesta(String respuesta, List<Producto> candidatos) {
         List<Producto> resultados = new ArrayList<>();
 
-        if (respuesta == null || respuesta.trim().isEmpty() || respuesta.contains("sin_resultados")) {
+        if (respuesta == null || respuesta.isEmpty() || respuesta.contains("sin_resultados")) {
             return resultados;
         }
 
-        String[] ids = respuesta.trim().replaceAll("[^0-9,]", "").split(",");
-
-        for (String id : ids) {
-            try {
-                Long productoId = Long.parseLong(id.trim());
-                todosProductos.stream()
-                        .filter(p -> p.getId().equals(productoId))
-                        .findFirst()
-                        .ifPresent(resultados::add);
-            } catch (Exception e) {
-                // Ignorar
+        LectorIds lector = new LectorIds(candidatos, resultados::add);
+        lector.leer(respuesta);
+        lector.terminar();
+        return resultados;
+    }
+
+    /**
+     * Lector incremental de IDs: acepta el texto en uno o varios fragmentos (un número
+     * puede quedar partido entre dos fragmentos) y avisa cada producto nuevo encontrado.
+     * Solo valen los IDs de los candidatos del prompt; los precios que el modelo
+     * repita ("$499.99") se descartan enteros en vez de leerse como dos IDs.
+     */
+    static class LectorIds {
+        private final Map<Long, Producto> candidatos = new HashMap<>();
+        private final Consumer<Producto> alEncontrar;
+        private final Set<Long> vistos = new HashSet<>();
+        private long id = 0;
+        private boolean enNumero = false;
+        private boolean descartar = false;   // el número es un precio o un decimal
+        private boolean puntoPendiente = false; // número seguido de '.': falta ver si sigue un dígito
+        private char anterior = ' ';
+
+        LectorIds(List<Producto> candidatos, Consumer<Producto> alEncontrar) {
+            for (Producto p : candidatos) {
+                this.candidatos.put(p.getId(), p);
             }
+            this.alEncontrar = alEncontrar;
         }
 
-        return resultados;
-    }
+        void leer(String fragmento) {
+            for (int i = 0, n = fragmento.length(); i < n; i++) {
+                char c = fragmento.charAt(i);
+                boolean digito = c >= '0' && c <= '9';
+                if (puntoPendiente) {
+                    puntoPendiente = false;
+                    if (digito) {
+                        descartar = true; // parte decimal: sigue el mismo número
+                    } else {
+                        cerrarNumero();
+                    }
+                }
+                if (digito) {
+                    if (!enNumero) {
+                        descartar = anterior == '$';
+                    }
+                    // Descarta números absurdamente largos en vez de desbordar
+                    id = id < Long.MAX_VALUE / 10 ? id * 10 + (c - '0') : Long.MAX_VALUE;
+                    enNumero = true;
+                } else if (c == '.' && enNumero) {
+                    puntoPendiente = true;
+                } else {
+                    cerrarNumero();
+                }
+                anterior = c;
+            }
+        }
 
-    public List<String> obtenerSugerenciasConGemini(String consulta) {
-        try {
-            String respuesta = llamarGemini(consulta, "");
-            List<String> sugerencias = new ArrayList<>();
-            for (String linea : respuesta.split("\n")) {
-                String s = linea.trim();
-                if (!s.isEmpty() && sugerencias.size() < 5) {
-                    sugerencias.add(s);
+        void terminar() {
+            puntoPendiente = false;
+            cerrarNumero();
+        }
+
+        private void cerrarNumero() {
+            if (!enNumero) {
+                return;
+            }
+            if (!descartar && vistos.add(id)) {
+                Producto producto = candidatos.get(id);
+                if (producto != null) {
+                    alEncontrar.accept(producto);
                 }
             }
-            return sugerencias;
-        } catch (Exception e) {
-            return Collections.emptyList();
+            id = 0;
+            enNumero = false;
+            descartar = false;
         }
     }
 
+    public CompletableFuture<List<String>> obtenerSugerenciasConGemini(String consulta) {
+        return geminiClient.generarContenido(construirPrompt(consulta, ""))
+                .thenApply(respuesta -> {
+                    List<String> sugerencias = new ArrayList<>();
+                    for (String linea : respuesta.split("\n")) {
+                        String s = linea.trim();
+                        if (!s.isEmpty() && sugerencias.size() < 5) {
+                            sugerencias.add(s);
+                        }
+                    }
+                    return sugerencias;
+                })
+                // Sin Gemini: sugerencias del autocompletado local
+                .exceptionally(e -> productoService.autocompletar(consulta, 5).stream()
+                        .map(s -> s.texto)
+                        .collect(Collectors.toList()));
+    }
+
     public static class BuscaGeminiResponse {
         public String consulta;
         public List<Producto> resultados;
         public String razonamientoGemini;
         public String mensaje;
         public int total;
+        public String tipo = "GEMINI_AI"; // GEMINI_AI o LOCAL (plan B sin Gemini)
 
         public BuscaGeminiResponse(String consulta, List<Producto> resultados,
                                    String razonamientoGemini, String mensaje) {
@@ -0,0 +1,159 @@
+package mowi.store.sboot_api.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caché de resultados de búsqueda con Gemini.
+ *
+ * La clave es la consulta normalizada ("laptop barata" y "Laptop económica" dan la
+ * misma clave) más la firma de contenido del catálogo: si cambia un producto,
+ * las entradas viejas dejan de coincidir y además se vacían al recibir el
+ * evento de catálogo. Expulsión LRU por tamaño y expiración por TTL.
+ */
+@Component
+public class CacheBusquedaGemini {
+
+    // Sinónimos frecuentes en las consultas: se reducen a una sola forma
+    private static final Map<String, String> SINONIMOS = Map.ofEntries(
+            Map.entry("barata", "barato"),
+            Map.entry("economico", "barato"),
+            Map.entry("economica", "barato"),
+            Map.entry("accesible", "barato"),
+            Map.entry("celular", "telefono"),
+            Map.entry("movil", "telefono"),
+            Map.entry("smartphone", "telefono"),
+            Map.entry("notebook", "laptop"),
+            Map.entry("portatil", "laptop"),
+            Map.entry("computadora", "pc"),
+            Map.entry("ordenador", "pc")
+    );
+
+    private static final Set<String> PALABRAS_VACIAS = Set.of(
+            "a", "al", "algo", "busco", "con", "de", "del", "el", "en", "la", "las", "lo", "los",
+            "me", "mi", "para", "por", "que", "quiero", "un", "una", "unos", "unas", "y"
+    );
+
+    private final int maxEntradas;
+    private final long ttlMillis;
+
+    private final LinkedHashMap<String, Entrada> entradas;
+
+    private final AtomicLong aciertos = new AtomicLong();
+    private final AtomicLong fallos = new AtomicLong();
+    private final AtomicLong expulsiones = new AtomicLong();
+
+    public CacheBusquedaGemini(@Value("${gemini.cache.max-entradas:500}") int maxEntradas,
+                               @Value("${gemini.cache.ttl-minutos:30}") long ttlMinutos) {
+        this.maxEntradas = maxEntradas;
+        this.ttlMillis = ttlMinutos * 60_000L;
+        // accessOrder = true: el más antiguo es el menos usado recientemente (LRU)
+        this.entradas = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entrada> eldest) {
+                if (size() > CacheBusquedaGemini.this.maxEntradas) {
+                    expulsiones.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * IDs de productos guardados para la consulta, o vacío si no hay entrada vigente.
+     */
+    public Optional<Entrada> obtener(String consulta, long firmaCatalogo) {
+        String clave = clave(consulta, firmaCatalogo);
+        Entrada entrada;
+        synchronized (entradas) {
+            entrada = entradas.get(clave);
+            if (entrada != null && entrada.expiraEn < System.currentTimeMillis()) {
+                entradas.remove(clave);
+                expulsiones.incrementAndGet();
+                entrada = null;
+            }
+        }
+        (entrada != null ? aciertos : fallos).incrementAndGet();
+        return Optional.ofNullable(entrada);
+    }
+
+    public void guardar(String consulta, long firmaCatalogo, List<Long> productoIds, String razonamiento) {
+        Entrada entrada = new Entrada(List.copyOf(productoIds), razonamiento,
+                System.currentTimeMillis() + ttlMillis);
+        synchronized (entradas) {
+            entradas.put(clave(consulta, firmaCatalogo), entrada);
+        }
+    }
+
+    // Cambió el catálogo: las entradas ya no sirven (sus claves tienen la firma anterior)
+    @EventListener
+    public void alActualizarCatalogo(CatalogoCache.CatalogoActualizado evento) {
+        synchronized (entradas) {
+            entradas.keySet().removeIf(k -> !k.startsWith(evento.getSnapshot().getFirmaContenido() + "|"));
+        }
+    }
+
+    public Map<String, Object> estadisticas() {
+        long a = aciertos.get();
+        long f = fallos.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (entradas) {
+            stats.put("entradas", entradas.size());
+        }
+        stats.put("maxEntradas", maxEntradas);
+        stats.put("aciertos", a);
+        stats.put("fallos", f);
+        stats.put("expulsiones", expulsiones.get());
+        stats.put("tasaAciertos", a + f == 0 ? 0.0 : (double) a / (a + f));
+        return stats;
+    }
+
+    /**
+     * Forma canónica de la consulta: minúsculas, sin tildes, sin palabras vacías,
+     * sinónimos unificados, plural simple quitado y palabras ordenadas.
+     */
+    static String normalizarConsulta(String consulta) {
+        TreeSet<String> terminos = new TreeSet<>();
+        for (String token : IndiceBusqueda.tokenizar(consulta)) {
+            if (PALABRAS_VACIAS.contains(token)) {
+                continue;
+            }
+            String base = singular(SINONIMOS.getOrDefault(token, token));
+            terminos.add(SINONIMOS.getOrDefault(base, base));
+        }
+        return String.join(" ", terminos);
+    }
+
+    // Plural simple del español: "celulares" -> "celular", "laptops" -> "laptop"
+    private static String singular(String termino) {
+        int n = termino.length();
+        if (n <= 3 || termino.charAt(n - 1) != 's' || termino.endsWith("ss")) {
+            return termino;
+        }
+        if (n > 4 && termino.charAt(n - 2) == 'e' && "aeiou".indexOf(termino.charAt(n - 3)) < 0) {
+            return termino.substring(0, n - 2);
+        }
+        return termino.substring(0, n - 1);
+    }
+
+    private static String clave(String consulta, long firmaCatalogo) {
+        return firmaCatalogo + "|" + normalizarConsulta(consulta);
+    }
+
+    public static class Entrada {
+        public final List<Long> productoIds;
+        public final String razonamiento;
+        final long expiraEn;
+
+        Entrada(List<Long> productoIds, String razonamiento, long expiraEn) {
+            this.productoIds = productoIds;
+            this.razonamiento = razonamiento;
+            this.expiraEn = expiraEn;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package mowi.store.sboot_api.service;
+
+import mowi.store.sboot_api.repository.ResenaRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Calificaciones agregadas por producto (cantidad, suma e histograma de 1 a 5 estrellas).
+ *
+ * Se cargan una vez con un GROUP BY y después se actualizan de forma incremental
+ * cuando ResenaService crea o elimina reseñas (tras el commit). Leer el promedio
+ * de un producto es O(1), sin tocar la tabla de reseñas.
+ *
+ * Un recálculo periódico absorbe los cambios hechos fuera de esta API (admin de Django).
+ */
+@Component
+public class CalificacionesProductos {
+
+    @Autowired
+    private ResenaRepository resenaRepository;
+
+    private volatile Map<Long, Agregado> agregados;
+
+    // Reseñas confirmándose (lectura) frente al recálculo completo (escritura)
+    private final ReentrantReadWriteLock cambios = new ReentrantReadWriteLock();
+
+    public ResumenCalificaciones obtener(Long productoId) {
+        return cargados().getOrDefault(productoId, Agregado.VACIO).resumen(productoId);
+    }
+
+    // Varios productos de una vez (por ejemplo, una página del catálogo)
+    public List<ResumenCalificaciones> obtenerVarios(Collection<Long> productoIds) {
+        Map<Long, Agregado> actuales = cargados();
+        List<ResumenCalificaciones> resumenes = new ArrayList<>();
+        for (Long id : productoIds) {
+            resumenes.add(actuales.getOrDefault(id, Agregado.VACIO).resumen(id));
+        }
+        return resumenes;
+    }
+
+    // Nueva reseña: se suma al agregado cuando la transacción hace commit
+    public void registrar(Long productoId, int calificacion) {
+        alConfirmar(actuales -> actuales.merge(productoId, Agregado.VACIO.con(calificacion, 1),
+                (actual, ignorado) -> actual.con(calificacion, 1)));
+    }
+
+    // Reseña eliminada: se resta del agregado cuando la transacción hace commit
+    public void quitar(Long productoId, int calificacion) {
+        alConfirmar(actuales -> actuales.computeIfPresent(productoId,
+                (id, actual) -> actual.con(calificacion, -1)));
+    }
+
+    /**
+     * Recalcula todos los agregados desde la base de datos (una sola consulta).
+     * La consulta y el reemplazo van bajo el cerrojo de escritura: cada reseña en curso
+     * queda entera antes (confirmada y sumada al mapa viejo, y también en la consulta)
+     * o entera después (confirmada y sumada al mapa nuevo), nunca contada dos veces ni perdida.
+     */
+    @Scheduled(fixedDelayString = "${resenas.recalculo.ms:600000}")
+    public void recalcular() {
+        Map<Long, Agregado> nuevos;
+        cambios.writeLock().lock();
+        try {
+            nuevos = consultar();
+            agregados = nuevos;
+        } finally {
+            cambios.writeLock().unlock();
+        }
+        System.out.println("⭐ Calificaciones recalculadas: " + nuevos.size() + " productos");
+    }
+
+    private Map<Long, Agregado> consultar() {
+        Map<Long, Agregado> nuevos = new ConcurrentHashMap<>();
+        for (ResenaRepository.ConteoCalificacion conteo : resenaRepository.contarPorProductoYCalificacion()) {
+            int calificacion = conteo.getCalificacion();
+            if (calificacion < 1 || calificacion > 5) {
+                continue;
+            }
+            nuevos.merge(conteo.getProductoId(),
+                    Agregado.VACIO.con(calificacion, conteo.getCantidad().intValue()),
+                    (actual, ignorado) -> actual.con(calificacion, conteo.getCantidad().intValue()));
+        }
+        return nuevos;
+    }
+
+    private Map<Long, Agregado> cargados() {
+        Map<Long, Agregado> actuales = agregados;
+        if (actuales != null) {
+            return actuales;
+        }
+        // Un hilo con una reseña a medio confirmar no puede esperar al cerrojo de escritura:
+        // lee sin publicar y la primera carga la hace otro
+        if (cambios.getReadHoldCount() > 0) {
+            return consultar();
+        }
+        cambios.writeLock().lock();
+        try {
+            if (agregados == null) {
+                agregados = consultar();
+            }
+            return agregados;
+        } finally {
+            cambios.writeLock().unlock();
+        }
+    }
+
+    // Cerrojo de lectura desde registrar()/quitar() hasta el fin de la transacción de la reseña
+    private void alConfirmar(Consumer<Map<Long, Agregado>> cambio) {
+        cambios.readLock().lock();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    try {
+                        if (status == STATUS_COMMITTED) {
+                            aplicar(cambio);
+                        }
+                    } finally {
+                        cambios.readLock().unlock();
+                    }
+                }
+            });
+        } else {
+            try {
+                aplicar(cambio);
+            } finally {
+                cambios.readLock().unlock();
+            }
+        }
+    }
+
+    // Sin agregados cargados no hay nada que ajustar: la primera carga ya ve este cambio
+    private void aplicar(Consumer<Map<Long, Agregado>> cambio) {
+        Map<Long, Agregado> actuales = agregados;
+        if (actuales != null) {
+            cambio.accept(actuales);
+        }
+    }
+
+    // Inmutable: cada cambio crea uno nuevo (se reemplaza con merge/compute del mapa)
+    private static class Agregado {
+        static final Agregado VACIO = new Agregado(0, 0, new int[5]);
+
+        final int cantidad;
+        final long suma;
+        final int[] estrellas; // estrellas[0] = reseñas de 1 estrella ... estrellas[4] = de 5
+
+        Agregado(int cantidad, long suma, int[] estrellas) {
+            this.cantidad = cantidad;
+            this.suma = suma;
+            this.estrellas = estrellas;
+        }
+
+        Agregado con(int calificacion, int veces) {
+            int[] nuevas = estrellas.clone();
+            nuevas[calificacion - 1] = Math.max(0, nuevas[calificacion - 1] + veces);
+            return new Agregado(Math.max(0, cantidad + veces), Math.max(0, suma + (long) calificacion * veces), nuevas);
+        }
+
+        ResumenCalificaciones resumen(Long productoId) {
+            Map<Integer, Integer> histograma = new LinkedHashMap<>();
+            for (int i = 0; i < 5; i++) {
+                histograma.put(i + 1, estrellas[i]);
+            }
+            double promedio = cantidad == 0 ? 0.0 : Math.round(suma * 100.0 / cantidad) / 100.0;
+            return new ResumenCalificaciones(productoId, promedio, cantidad, histograma);
+        }
+    }
+
+    public static class ResumenCalificaciones {
+        public Long productoId;
+        public double promedio;
+        public int total;
+        public Map<Integer, Integer> histograma; // estrellas -> cantidad de reseñas
+
+        public ResumenCalificaciones(Long productoId, double promedio, int total, Map<Integer, Integer> histograma) {
+            this.productoId = productoId;
+            this.promedio = promedio;
+            this.total = total;
+            this.histograma = histograma;
+        }
+    }
+}
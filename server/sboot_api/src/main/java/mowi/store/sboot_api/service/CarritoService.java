@@ -2,14 +2,22 @@ package mowi.store.sboot_api.service;
 
 import mowi.store.sboot_api.model.Carrito;
 import mowi.store.sboot_api.model.ItemCarrito;
-import mowi.store.sboot_api.model.Producto;
+import mowi.store.sboot_api.repository.CarritoJdbcRepository;
 import mowi.store.sboot_api.repository.CarritoRepository;
 import mowi.store.sboot_api.repository.ItemCarritoRepository;
 import mowi.store.sboot_api.repository.ProductoRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional; // <--- IMPORTANTE: Asegúrate de tener este import
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 public class CarritoService {
@@ -23,7 +31,21 @@ public class CarritoService {
     @Autowired
     private ProductoRepository productoRepository;
 
-    // Obtener o crear carrito del usuario
+    @Autowired
+    private CarritoJdbcRepository carritoJdbcRepository;
+
+    @Autowired
+    private CarritosEnMemoria carritosEnMemoria;
+
+    // "base" (cada cambio va a MySQL) o "memoria" (CarritosEnMemoria + volcado periódico)
+    @Value("${carrito.almacen:base}")
+    private String almacen;
+
+    private boolean enMemoria() {
+        return "memoria".equalsIgnoreCase(almacen);
+    }
+
+    // Obtener o crear carrito del usuario (solo la fila: los ítems no se cargan)
     public Carrito obtenerOCrearCarrito(Long usuarioId) {
         Optional<Carrito> carritoOpt = carritoRepository.findByUsuarioId(usuarioId);
 
@@ -36,30 +58,45 @@ public class CarritoService {
     }
 
     // Agregar producto al carrito
+    // Un solo upsert (carrito del usuario, producto) -> cantidad y subtotal; solo el
+    // primer agregado de un usuario sin carrito necesita crearlo antes.
     @Transactional
-    public ItemCarrito agregarAlCarrito(Long usuarioId, Long productoId, Integer cantidad) {
-        Carrito carrito = obtenerOCrearCarrito(usuarioId);
-        Producto producto = productoRepository.findById(productoId)
-                .orElseThrow(() -> new RuntimeException("Producto no encontrado"));
+    public Map<String, Object> agregarAlCarrito(Long usuarioId, Long productoId, Integer cantidad) {
+        if (cantidad == null || cantidad <= 0) {
+            throw new RuntimeException("Cantidad inválida");
+        }
 
-        // Verificar si el producto ya está en el carrito
-        Optional<ItemCarrito> itemExistente = itemCarritoRepository
-                .findByCarrito_IdAndProducto_Id(carrito.getId(), productoId);
+        if (enMemoria()) {
+            carritosEnMemoria.agregar(usuarioId, productoId, cantidad);
+            return respuestaAgregado(productoId, cantidad);
+        }
 
-        if (itemExistente.isPresent()) {
-            ItemCarrito item = itemExistente.get();
-            item.setCantidad(item.getCantidad() + cantidad);
-            return itemCarritoRepository.save(item);
+        int filas = carritoJdbcRepository.agregarItem(usuarioId, productoId, cantidad);
+        if (filas == 0) {
+            if (!productoRepository.existsById(productoId)) {
+                throw new RuntimeException("Producto no encontrado");
+            }
+            obtenerOCrearCarrito(usuarioId);
+            carritoJdbcRepository.agregarItem(usuarioId, productoId, cantidad);
         }
 
-        // Crear nuevo item
-        ItemCarrito nuevoItem = new ItemCarrito(carrito, producto, cantidad);
-        return itemCarritoRepository.save(nuevoItem);
+        return respuestaAgregado(productoId, cantidad);
+    }
+
+    private Map<String, Object> respuestaAgregado(Long productoId, Integer cantidad) {
+        Map<String, Object> respuesta = new HashMap<>();
+        respuesta.put("mensaje", "Producto agregado al carrito");
+        respuesta.put("productoId", productoId);
+        respuesta.put("cantidad", cantidad);
+        return respuesta;
     }
 
     // Actualizar cantidad de producto en carrito
     @Transactional
     public ItemCarrito actualizarCantidad(Long usuarioId, Long productoId, Integer cantidad) {
+        if (enMemoria()) {
+            return carritosEnMemoria.actualizar(usuarioId, productoId, cantidad);
+        }
         Carrito carrito = obtenerOCrearCarrito(usuarioId);
         ItemCarrito item = itemCarritoRepository
                 .findByCarrito_IdAndProducto_Id(carrito.getId(), productoId)
@@ -77,6 +114,10 @@ public class CarritoService {
     // Eliminar producto del carrito
     @Transactional
     public void eliminarDelCarrito(Long usuarioId, Long itemId) {
+        if (enMemoria()) {
+            carritosEnMemoria.eliminar(usuarioId, itemId);
+            return;
+        }
         ItemCarrito item = itemCarritoRepository.findById(itemId)
                 .orElseThrow(() -> new RuntimeException("Item no encontrado"));
 
@@ -91,21 +132,109 @@ public class CarritoService {
     // Obtener carrito del usuario - CORREGIDO
     @Transactional // Mantenemos @Transactional para la sesión de DB
     public Carrito obtenerCarrito(Long usuarioId) {
-        // ELIMINAMOS la carga manual y el setItems que causaban el error de Hibernate.
-        // Gracias a FetchType.EAGER en el modelo Carrito, los items se cargan solos.
-        return obtenerOCrearCarrito(usuarioId);
+        if (enMemoria()) {
+            return carritosEnMemoria.obtener(usuarioId);
+        }
+        // Única operación que necesita el grafo completo: carrito, ítems, productos y
+        // categorías en una sola consulta (entity graph), sin N+1.
+        Optional<Carrito> carrito = carritoRepository.findConItemsByUsuarioId(usuarioId);
+        if (carrito.isPresent()) {
+            return carrito.get();
+        }
+        Carrito nuevo = obtenerOCrearCarrito(usuarioId);
+        nuevo.setItems(new ArrayList<>());
+        return nuevo;
     }
 
     // Limpiar carrito (después de pago)
     @Transactional
     public void limpiarCarrito(Long usuarioId) {
-        Optional<Carrito> carritoOpt = carritoRepository.findByUsuarioId(usuarioId);
-        if (carritoOpt.isPresent()) {
-            Carrito carrito = carritoOpt.get();
-            itemCarritoRepository.deleteByCarrito_Id(carrito.getId());
-            if (carrito.getItems() != null) {
-                carrito.getItems().clear();
+        if (enMemoria()) {
+            carritosEnMemoria.limpiar(usuarioId);
+            return;
+        }
+        // Un solo DELETE, sin cargar el carrito ni sus ítems
+        itemCarritoRepository.deleteByUsuarioId(usuarioId);
+    }
+
+    // Líneas del carrito con su producto, tal como las ve el checkout
+    @Transactional
+    public List<ItemCarrito> itemsParaCheckout(Long usuarioId) {
+        if (enMemoria()) {
+            return carritosEnMemoria.itemsParaCheckout(usuarioId);
+        }
+        // Buscamos los ítems directamente en la base de datos usando el ID del carrito
+        // (con JOIN FETCH del producto: una consulta para todas las líneas)
+        Carrito carrito = obtenerOCrearCarrito(usuarioId);
+        return itemCarritoRepository.findByCarritoIdConProducto(carrito.getId());
+    }
+
+    /**
+     * Aplica de una vez un diff completo del carrito (agregar, actualizar y eliminar
+     * muchas líneas) y devuelve el carrito resultante. Todo en una transacción:
+     * un DELETE y dos lotes de upsert, sin importar cuántas líneas traiga.
+     */
+    @Transactional
+    public Carrito sincronizarCarrito(Long usuarioId, CambiosCarrito cambios) {
+        Map<Long, Integer> agregar = cantidadesPorProducto(cambios.agregar, true);
+        Map<Long, Integer> actualizar = cantidadesPorProducto(cambios.actualizar, false);
+        Set<Long> eliminar = new HashSet<>(cambios.eliminar != null ? cambios.eliminar : List.of());
+        // Actualizar a 0 (o menos) es quitar la línea
+        actualizar.entrySet().removeIf(e -> {
+            if (e.getValue() <= 0) {
+                eliminar.add(e.getKey());
+                return true;
             }
+            return false;
+        });
+
+        if (enMemoria()) {
+            return carritosEnMemoria.aplicarCambios(usuarioId, agregar, actualizar, eliminar);
+        }
+
+        // Sin cargar la entidad Carrito: el carrito que se devuelve se lee al final ya actualizado
+        Long carritoId = carritoJdbcRepository.idCarritoOCrear(usuarioId);
+        carritoJdbcRepository.eliminarItems(carritoId, eliminar);
+        List<Long> inexistentes = new ArrayList<>(carritoJdbcRepository.guardarItems(carritoId, agregar, true));
+        inexistentes.addAll(carritoJdbcRepository.guardarItems(carritoId, actualizar, false));
+        if (!inexistentes.isEmpty()) {
+            throw new RuntimeException("Producto no encontrado: " + inexistentes);
+        }
+
+        return carritoRepository.findConItemsByUsuarioId(usuarioId)
+                .orElseThrow(() -> new RuntimeException("Carrito no encontrado"));
+    }
+
+    private Map<Long, Integer> cantidadesPorProducto(List<CambiosCarrito.Linea> lineas, boolean sumar) {
+        Map<Long, Integer> cantidades = new LinkedHashMap<>();
+        if (lineas == null) {
+            return cantidades;
+        }
+        for (CambiosCarrito.Linea linea : lineas) {
+            if (linea.productoId == null || linea.cantidad == null) {
+                throw new RuntimeException("Cada línea necesita productoId y cantidad");
+            }
+            if (sumar && linea.cantidad <= 0) {
+                throw new RuntimeException("Cantidad inválida");
+            }
+            if (sumar) {
+                cantidades.merge(linea.productoId, linea.cantidad, Integer::sum);
+            } else {
+                cantidades.put(linea.productoId, linea.cantidad);
+            }
+        }
+        return cantidades;
+    }
+
+    // Cuerpo de POST /api/carrito/sincronizar
+    public static class CambiosCarrito {
+        public List<Linea> agregar;     // suma la cantidad (crea la línea si no existe)
+        public List<Linea> actualizar;  // fija la cantidad (0 = quitar)
+        public List<Long> eliminar;     // IDs de producto a quitar
+
+        public static class Linea {
+            public Long productoId;
+            public Integer cantidad;
         }
     }
-}
\ No newline at end of file
+}
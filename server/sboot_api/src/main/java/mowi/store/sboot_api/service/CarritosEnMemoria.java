@@ -0,0 +1,293 @@
+package mowi.store.sboot_api.service;
+
+import mowi.store.sboot_api.model.Carrito;
+import mowi.store.sboot_api.model.ItemCarrito;
+import mowi.store.sboot_api.model.Producto;
+import mowi.store.sboot_api.repository.CarritoJdbcRepository;
+import mowi.store.sboot_api.repository.CarritoRepository;
+import mowi.store.sboot_api.repository.ProductoRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Almacén de carritos en memoria (modo carrito.almacen=memoria).
+ *
+ * Los carritos viven en un mapa por usuarioId: leer y modificar no toca MySQL.
+ * Un volcado periódico escribe en lote los carritos modificados y saca de memoria
+ * los que llevan tiempo sin uso. Pensado para una sola instancia del servidor.
+ *
+ * En este modo el ID de cada ítem es el ID de su producto (las líneas nuevas
+ * no tienen ID en la base hasta el volcado).
+ */
+@Component
+public class CarritosEnMemoria {
+
+    @Autowired
+    private CarritoRepository carritoRepository;
+
+    @Autowired
+    private CarritoJdbcRepository carritoJdbcRepository;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private CatalogoCache catalogoCache;
+
+    @Value("${carrito.memoria.inactividad-min:30}")
+    private long inactividadMinutos;
+
+    private final Map<Long, CarritoMemoria> carritos = new ConcurrentHashMap<>();
+
+    public Carrito obtener(Long usuarioId) {
+        CarritoMemoria carrito = cargar(usuarioId);
+        Map<Long, Integer> foto;
+        synchronized (carrito) {
+            carrito.tocar();
+            foto = new LinkedHashMap<>(carrito.cantidades);
+        }
+        return aEntidad(carrito, foto);
+    }
+
+    public void agregar(Long usuarioId, Long productoId, int cantidad) {
+        if (catalogoCache.actual().porId(productoId).isEmpty() && !productoRepository.existsById(productoId)) {
+            throw new RuntimeException("Producto no encontrado");
+        }
+        modificar(usuarioId, c -> c.cantidades.merge(productoId, cantidad, Integer::sum));
+    }
+
+    public ItemCarrito actualizar(Long usuarioId, Long productoId, int cantidad) {
+        modificar(usuarioId, c -> {
+            if (!c.cantidades.containsKey(productoId)) {
+                throw new RuntimeException("Item no encontrado en el carrito");
+            }
+            if (cantidad <= 0) {
+                throw new RuntimeException("Cantidad inválida");
+            }
+            c.cantidades.put(productoId, cantidad);
+        });
+        return obtener(usuarioId).getItems().stream()
+                .filter(i -> i.getId().equals(productoId))
+                .findFirst()
+                .orElseThrow(() -> new RuntimeException("Item no encontrado en el carrito"));
+    }
+
+    public void eliminar(Long usuarioId, Long itemId) {
+        modificar(usuarioId, c -> {
+            if (c.cantidades.remove(itemId) == null) {
+                throw new RuntimeException("Item no encontrado");
+            }
+        });
+    }
+
+    // Diff completo del carrito aplicado bajo un solo candado (todo o nada)
+    public Carrito aplicarCambios(Long usuarioId, Map<Long, Integer> agregar,
+                                  Map<Long, Integer> actualizar, Set<Long> eliminar) {
+        Set<Long> nuevos = new HashSet<>(agregar.keySet());
+        nuevos.addAll(actualizar.keySet());
+        CatalogoCache.Snapshot catalogo = catalogoCache.actual();
+        nuevos.removeIf(id -> catalogo.porId(id).isPresent());
+        if (!nuevos.isEmpty()) {
+            // No están en el catálogo en memoria: se confirman contra la base (una consulta)
+            productoRepository.findAllById(nuevos).forEach(p -> nuevos.remove(p.getId()));
+            if (!nuevos.isEmpty()) {
+                throw new RuntimeException("Producto no encontrado: " + nuevos);
+            }
+        }
+
+        modificar(usuarioId, c -> {
+            eliminar.forEach(c.cantidades::remove);
+            agregar.forEach((id, cantidad) -> c.cantidades.merge(id, cantidad, Integer::sum));
+            c.cantidades.putAll(actualizar);
+        });
+        return obtener(usuarioId);
+    }
+
+    public void limpiar(Long usuarioId) {
+        modificar(usuarioId, c -> c.cantidades.clear());
+    }
+
+    /**
+     * Foto consistente del carrito para el checkout: cantidades copiadas bajo el
+     * candado del carrito y productos leídos de la base (stock al día).
+     */
+    public List<ItemCarrito> itemsParaCheckout(Long usuarioId) {
+        CarritoMemoria carrito = cargar(usuarioId);
+        Map<Long, Integer> foto;
+        synchronized (carrito) {
+            carrito.tocar();
+            foto = new LinkedHashMap<>(carrito.cantidades);
+        }
+        Carrito entidad = new Carrito(usuarioId);
+        entidad.setId(carrito.carritoId);
+        List<ItemCarrito> items = new ArrayList<>();
+        for (Producto producto : productoRepository.findAllById(foto.keySet())) {
+            items.add(new ItemCarrito(entidad, producto, foto.get(producto.getId())));
+        }
+        return items;
+    }
+
+    // Aplica un cambio con el candado del carrito y lo marca para el próximo volcado
+    private void modificar(Long usuarioId, Consumer<CarritoMemoria> cambio) {
+        while (true) {
+            CarritoMemoria carrito = cargar(usuarioId);
+            synchronized (carrito) {
+                if (carrito.desalojado) {
+                    continue; // se sacó de memoria entre cargar() y el candado
+                }
+                cambio.accept(carrito);
+                carrito.sucio = true;
+                carrito.tocar();
+                return;
+            }
+        }
+    }
+
+    // Carrito en memoria del usuario; la primera vez se lee de la base
+    private CarritoMemoria cargar(Long usuarioId) {
+        CarritoMemoria carrito = carritos.get(usuarioId);
+        if (carrito != null) {
+            return carrito;
+        }
+        CarritoMemoria nuevo = new CarritoMemoria(usuarioId);
+        carritoRepository.findConItemsByUsuarioId(usuarioId).ifPresent(c -> {
+            nuevo.carritoId = c.getId();
+            if (c.getItems() != null) {
+                for (ItemCarrito item : c.getItems()) {
+                    nuevo.cantidades.merge(item.getProducto().getId(), item.getCantidad(), Integer::sum);
+                }
+            }
+        });
+        CarritoMemoria previo = carritos.putIfAbsent(usuarioId, nuevo);
+        return previo != null ? previo : nuevo;
+    }
+
+    /**
+     * Write-behind: guarda en un lote los carritos modificados y saca de memoria
+     * los inactivos. Si el volcado falla, los carritos siguen marcados y se
+     * reintentan en el siguiente ciclo.
+     */
+    @Scheduled(fixedDelayString = "${carrito.memoria.volcado-ms:2000}")
+    public synchronized void volcar() {
+        Map<CarritoMemoria, Map<Long, Integer>> pendientes = new LinkedHashMap<>();
+        for (CarritoMemoria carrito : carritos.values()) {
+            synchronized (carrito) {
+                if (carrito.sucio) {
+                    pendientes.put(carrito, new LinkedHashMap<>(carrito.cantidades));
+                    carrito.sucio = false;
+                }
+            }
+        }
+
+        if (!pendientes.isEmpty()) {
+            try {
+                Map<Long, Map<Long, Integer>> porCarritoId = new LinkedHashMap<>();
+                for (Map.Entry<CarritoMemoria, Map<Long, Integer>> p : pendientes.entrySet()) {
+                    CarritoMemoria carrito = p.getKey();
+                    if (carrito.carritoId == null) {
+                        carrito.carritoId = carritoRepository.findByUsuarioId(carrito.usuarioId)
+                                .orElseGet(() -> carritoRepository.save(new Carrito(carrito.usuarioId)))
+                                .getId();
+                    }
+                    porCarritoId.put(carrito.carritoId, p.getValue());
+                }
+                carritoJdbcRepository.reemplazarItems(porCarritoId);
+            } catch (Exception e) {
+                System.out.println("❌ Error guardando carritos (se reintenta): " + e.getMessage());
+                pendientes.keySet().forEach(c -> {
+                    synchronized (c) {
+                        c.sucio = true;
+                    }
+                });
+            }
+        }
+
+        // Fuera de memoria los carritos inactivos ya guardados
+        long limite = System.currentTimeMillis() - inactividadMinutos * 60_000L;
+        for (CarritoMemoria carrito : carritos.values()) {
+            synchronized (carrito) {
+                if (!carrito.sucio && carrito.ultimoAcceso < limite) {
+                    carrito.desalojado = true;
+                    carritos.remove(carrito.usuarioId, carrito);
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void alDetener() {
+        volcar();
+    }
+
+    /*
+     * Carrito con la forma de siempre para la respuesta JSON. Los productos salen del
+     * catálogo en memoria; los que aún no están en la foto (creados después del último
+     * refresco) se leen de la base en una consulta en vez de perder la línea.
+     */
+    private Carrito aEntidad(CarritoMemoria carrito, Map<Long, Integer> cantidades) {
+        Carrito entidad = new Carrito(carrito.usuarioId);
+        entidad.setId(carrito.carritoId);
+        entidad.setFechaCreacion(carrito.fechaCreacion);
+        entidad.setFechaActualizacion(carrito.fechaActualizacion);
+
+        CatalogoCache.Snapshot catalogo = catalogoCache.actual();
+        Map<Long, Producto> productos = new HashMap<>();
+        List<Long> faltantes = new ArrayList<>();
+        for (Long productoId : cantidades.keySet()) {
+            Optional<Producto> producto = catalogo.porId(productoId);
+            if (producto.isPresent()) {
+                productos.put(productoId, producto.get());
+            } else {
+                faltantes.add(productoId);
+            }
+        }
+        if (!faltantes.isEmpty()) {
+            productoRepository.findAllById(faltantes).forEach(p -> productos.put(p.getId(), p));
+        }
+
+        List<ItemCarrito> items = new ArrayList<>();
+        for (Map.Entry<Long, Integer> linea : cantidades.entrySet()) {
+            Producto producto = productos.get(linea.getKey());
+            if (producto == null) {
+                continue; // borrado de la base
+            }
+            ItemCarrito item = new ItemCarrito(entidad, producto, linea.getValue());
+            item.setId(producto.getId());
+            item.setFechaCreacion(carrito.fechaCreacion);
+            item.setFechaActualizacion(carrito.fechaActualizacion);
+            items.add(item);
+        }
+        entidad.setItems(items);
+        return entidad;
+    }
+
+    private static class CarritoMemoria {
+        final Long usuarioId;
+        Long carritoId; // ID en la base (null hasta el primer volcado si el usuario no tenía)
+        final Map<Long, Integer> cantidades = new LinkedHashMap<>(); // productoId -> cantidad
+        final LocalDateTime fechaCreacion = LocalDateTime.now();
+        LocalDateTime fechaActualizacion = fechaCreacion;
+        volatile long ultimoAcceso = System.currentTimeMillis();
+        volatile boolean sucio = false;
+        boolean desalojado = false;
+
+        CarritoMemoria(Long usuarioId) {
+            this.usuarioId = usuarioId;
+        }
+
+        void tocar() {
+            ultimoAcceso = System.currentTimeMillis();
+            if (sucio) {
+                fechaActualizacion = LocalDateTime.now();
+            }
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package mowi.store.sboot_api.service;
+
+import mowi.store.sboot_api.model.Producto;
+import mowi.store.sboot_api.repository.ProductoRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import jakarta.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Catálogo de productos en memoria.
+ *
+ * Las lecturas nunca tocan MySQL: se sirven desde un snapshot inmutable y
+ * pre-ordenado. El snapshot se reconstruye en segundo plano cuando:
+ * - un servicio de esta API modifica productos (invalidar()), o
+ * - la marca de versión de la tabla cambia (ediciones desde Django / admin, y
+ *   también el stock y los vendidos que descuentan los checkouts: así una ráfaga
+ *   de compras cuesta una sola reconstrucción por catalogo.verificacion.ms).
+ *
+ * Cada snapshot nuevo se publica como evento CatalogoActualizado para que los
+ * índices derivados (búsqueda, autocompletado...) se actualicen.
+ */
+@Component
+public class CatalogoCache {
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    private final ExecutorService reconstructor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "catalogo-rebuild");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Evita encolar varias reconstrucciones seguidas (se agrupan en una sola)
+    private final AtomicBoolean reconstruccionPendiente = new AtomicBoolean(false);
+
+    // Número de versión del snapshot, crece con cada reconstrucción
+    private final AtomicLong versiones = new AtomicLong();
+
+    private volatile Snapshot snapshot;
+
+    /**
+     * Snapshot actual. Solo la primera lectura (arranque en frío) carga de forma síncrona.
+     */
+    public Snapshot actual() {
+        Snapshot s = snapshot;
+        if (s == null) {
+            synchronized (this) {
+                s = snapshot;
+                if (s == null) {
+                    s = reconstruir();
+                }
+            }
+        }
+        return s;
+    }
+
+    /**
+     * Marca el catálogo como desactualizado. Si hay una transacción activa,
+     * la reconstrucción se lanza después del commit para no leer datos viejos.
+     */
+    public void invalidar() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    programarReconstruccion();
+                }
+            });
+        } else {
+            programarReconstruccion();
+        }
+    }
+
+    // Detecta cambios hechos fuera de esta API (Django admin) comparando la marca de versión
+    @Scheduled(fixedDelayString = "${catalogo.verificacion.ms:5000}")
+    public void verificarCambios() {
+        Snapshot s = snapshot;
+        if (s == null) {
+            return;
+        }
+        try {
+            ProductoRepository.VersionCatalogo version = productoRepository.obtenerVersionCatalogo();
+            if (!s.coincideCon(version)) {
+                programarReconstruccion();
+            }
+        } catch (Exception e) {
+            System.out.println("⚠️ No se pudo verificar la versión del catálogo: " + e.getMessage());
+        }
+    }
+
+    private void programarReconstruccion() {
+        if (reconstruccionPendiente.compareAndSet(false, true)) {
+            reconstructor.execute(() -> {
+                reconstruccionPendiente.set(false);
+                try {
+                    reconstruir();
+                } catch (Exception e) {
+                    // Se conserva el snapshot anterior; el siguiente chequeo lo reintentará
+                    System.out.println("❌ Error reconstruyendo catálogo: " + e.getMessage());
+                }
+            });
+        }
+    }
+
+    private Snapshot reconstruir() {
+        // La versión se lee antes que los datos: si algo cambia entre ambas lecturas,
+        // el siguiente chequeo verá una versión distinta y volverá a reconstruir.
+        ProductoRepository.VersionCatalogo version = productoRepository.obtenerVersionCatalogo();
+        List<Producto> productos = productoRepository.findAllConCategoria();
+        Snapshot nuevo = new Snapshot(versiones.incrementAndGet(), productos,
+                version.getTotal(), version.getUltimaActualizacion());
+        snapshot = nuevo;
+        eventPublisher.publishEvent(new CatalogoActualizado(nuevo));
+        System.out.println("✅ Catálogo en memoria reconstruido: " + productos.size() + " productos");
+        return nuevo;
+    }
+
+    @PreDestroy
+    public void detener() {
+        reconstructor.shutdownNow();
+    }
+
+    /**
+     * Vista inmutable del catálogo en un instante dado.
+     */
+    public static class Snapshot {
+
+        // Más vendidos primero (sin dato cuenta como 0); a igual número de ventas, por ID ascendente
+        public static final Comparator<Producto> POR_VENDIDOS =
+                Comparator.comparingInt(Snapshot::vendidosDe).reversed()
+                        .thenComparing(Producto::getId);
+
+        private final long version;
+        private final List<Producto> activos;
+        private final Map<Long, Producto> porId;
+        private final Map<Long, List<Producto>> activosPorCategoria;
+        private final long total;
+        private final LocalDateTime ultimaActualizacion;
+        private final long firmaContenido;
+
+        Snapshot(long version, List<Producto> productos, Long total, LocalDateTime ultimaActualizacion) {
+            Map<Long, Producto> ids = new HashMap<>(productos.size() * 2);
+            List<Producto> listaActivos = new ArrayList<>();
+            long firma = 0;
+            for (Producto p : productos) {
+                ids.put(p.getId(), p);
+                firma += firmaBusqueda(p); // suma: no depende del orden de carga
+                if (Boolean.TRUE.equals(p.getActivo())) {
+                    listaActivos.add(p);
+                }
+            }
+            listaActivos.sort(POR_VENDIDOS);
+
+            Map<Long, List<Producto>> categorias = new HashMap<>();
+            for (Producto p : listaActivos) {
+                if (p.getCategoria() != null) {
+                    categorias.computeIfAbsent(p.getCategoria().getId(), k -> new ArrayList<>()).add(p);
+                }
+            }
+            categorias.replaceAll((k, v) -> List.copyOf(v));
+
+            this.version = version;
+            this.activos = List.copyOf(listaActivos);
+            this.porId = Map.copyOf(ids);
+            this.activosPorCategoria = Map.copyOf(categorias);
+            this.total = total != null ? total : 0L;
+            this.ultimaActualizacion = ultimaActualizacion;
+            this.firmaContenido = firma;
+        }
+
+        // Vendidos con los que se ordena y se arma el cursor (null = 0)
+        public static int vendidosDe(Producto p) {
+            return p.getVendidos() != null ? p.getVendidos() : 0;
+        }
+
+        // Versión del snapshot (distinta en cada reconstrucción)
+        public long getVersion() { return version; }
+
+        /**
+         * Firma de lo que influye en una búsqueda (texto, categoría, precio, activo).
+         * A diferencia de getVersion(), no cambia cuando solo se mueven stock o vendidos.
+         */
+        public long getFirmaContenido() { return firmaContenido; }
+
+        // Todos los productos (activos o no), sin orden
+        public Collection<Producto> getTodos() { return porId.values(); }
+
+        // Productos activos ordenados por vendidos DESC
+        public List<Producto> getActivos() { return activos; }
+
+        // Productos activos de una categoría, mismo orden que getActivos()
+        public List<Producto> getActivosPorCategoria(Long categoriaId) {
+            return activosPorCategoria.getOrDefault(categoriaId, List.of());
+        }
+
+        // Cualquier producto (activo o no) por ID
+        public Optional<Producto> porId(Long id) {
+            return id == null ? Optional.empty() : Optional.ofNullable(porId.get(id));
+        }
+
+        public int size() { return porId.size(); }
+
+        /**
+         * Página keyset sobre una lista ordenada con POR_VENDIDOS: devuelve hasta
+         * 'limite' productos posteriores a (despuesDeVendidos, despuesDeId).
+         * Con cursor nulo empieza desde el principio. Búsqueda binaria: O(log n + limite).
+         */
+        public static List<Producto> paginaDespuesDe(List<Producto> ordenados, Integer despuesDeVendidos,
+                                                     Long despuesDeId, int limite) {
+            int desde = 0;
+            if (despuesDeVendidos != null && despuesDeId != null) {
+                Producto clave = new Producto();
+                clave.setVendidos(despuesDeVendidos);
+                clave.setId(despuesDeId);
+                int pos = Collections.binarySearch(ordenados, clave, POR_VENDIDOS);
+                desde = pos >= 0 ? pos + 1 : -pos - 1;
+            }
+            int hasta = Math.min(ordenados.size(), desde + limite);
+            return desde >= hasta ? List.of() : ordenados.subList(desde, hasta);
+        }
+
+        private static long firmaBusqueda(Producto p) {
+            long h = Objects.hash(
+                    p.getId(),
+                    p.getNombre(),
+                    p.getDescripcion(),
+                    p.getCategoria() != null ? p.getCategoria().getNombre() : null,
+                    p.getPrecio() != null ? p.getPrecio().stripTrailingZeros() : null,
+                    p.getActivo()
+            );
+            // Mezcla de bits para que la suma no se cancele entre productos parecidos
+            h *= 0x9E3779B97F4A7C15L;
+            return h ^ (h >>> 32);
+        }
+
+        boolean coincideCon(ProductoRepository.VersionCatalogo version) {
+            long totalActual = version.getTotal() != null ? version.getTotal() : 0L;
+            return totalActual == total && Objects.equals(version.getUltimaActualizacion(), ultimaActualizacion);
+        }
+    }
+
+    /**
+     * Evento publicado tras cada reconstrucción del catálogo.
+     */
+    public static class CatalogoActualizado {
+        private final Snapshot snapshot;
+
+        public CatalogoActualizado(Snapshot snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        public Snapshot getSnapshot() { return snapshot; }
+    }
+}
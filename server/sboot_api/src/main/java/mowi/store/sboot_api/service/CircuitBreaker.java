@@ -0,0 +1,77 @@
+package mowi.store.sboot_api.service;
+
+import java.time.Duration;
+
+/**
+ * Circuit breaker mínimo para llamadas a servicios externos.
+ *
+ * - CERRADO: las llamadas pasan; tras N fallos seguidos se abre.
+ * - ABIERTO: las llamadas se rechazan sin salir a la red hasta que pase la espera.
+ * - SEMI_ABIERTO: se deja pasar una sola llamada de prueba; si va bien se cierra,
+ *   si falla vuelve a abrirse.
+ */
+public class CircuitBreaker {
+
+    public enum Estado { CERRADO, ABIERTO, SEMI_ABIERTO }
+
+    private final String nombre;
+    private final int umbralFallos;
+    private final long esperaMillis;
+
+    private Estado estado = Estado.CERRADO;
+    private int fallosSeguidos = 0;
+    private long abiertoHasta = 0;
+    private boolean pruebaEnCurso = false;
+
+    public CircuitBreaker(String nombre, int umbralFallos, Duration espera) {
+        this.nombre = nombre;
+        this.umbralFallos = umbralFallos;
+        this.esperaMillis = espera.toMillis();
+    }
+
+    /**
+     * true si la llamada puede salir. Si devuelve true, el llamador debe
+     * informar el resultado con registrarExito() o registrarFallo().
+     */
+    public synchronized boolean permitirLlamada() {
+        if (estado == Estado.ABIERTO && System.currentTimeMillis() >= abiertoHasta) {
+            estado = Estado.SEMI_ABIERTO;
+            pruebaEnCurso = false;
+        }
+        switch (estado) {
+            case CERRADO:
+                return true;
+            case SEMI_ABIERTO:
+                if (pruebaEnCurso) {
+                    return false;
+                }
+                pruebaEnCurso = true;
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    public synchronized void registrarExito() {
+        if (estado != Estado.CERRADO) {
+            System.out.println("✅ Circuito " + nombre + " cerrado");
+        }
+        estado = Estado.CERRADO;
+        fallosSeguidos = 0;
+        pruebaEnCurso = false;
+    }
+
+    public synchronized void registrarFallo() {
+        fallosSeguidos++;
+        if (estado == Estado.SEMI_ABIERTO || fallosSeguidos >= umbralFallos) {
+            estado = Estado.ABIERTO;
+            abiertoHasta = System.currentTimeMillis() + esperaMillis;
+            pruebaEnCurso = false;
+            System.out.println("⚠️ Circuito " + nombre + " abierto por " + esperaMillis + " ms");
+        }
+    }
+
+    public synchronized Estado getEstado() {
+        return estado;
+    }
+}
@@ -0,0 +1,362 @@
+package mowi.store.sboot_api.service;
+
+import com.stripe.exception.StripeException;
+import com.stripe.model.PaymentIntent;
+import com.stripe.model.StripeCollection;
+import mowi.store.sboot_api.model.Transaccion;
+import mowi.store.sboot_api.repository.TransaccionRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Conciliación de pagos que quedaron PENDIENTE o PROCESANDO (webhook perdido,
+ * cliente que cerró la pestaña, caída durante la confirmación).
+ *
+ * Cada ciclo recorre las transacciones sin resolver de la más antigua a la más
+ * nueva, por páginas sobre el índice (estado, fecha_creacion), y sigue desde
+ * donde quedó el ciclo anterior. Por cada página:
+ * - Lista en Stripe los Payment Intents creados en ese rango de fechas (de a 100
+ *   por llamada, hasta MAX_LISTADOS_POR_PAGINA llamadas) y solo consulta uno por
+ *   uno los que no aparecieron. En una franja con mucho movimiento el listado llega
+ *   al tope y el resto sale en consultas sueltas: estado() lo cuenta en
+ *   consultasSueltas y listadosAlTope.
+ * - Todas las llamadas a Stripe van espaciadas (reconciliacion.llamadas-por-segundo).
+ * - Los cambios se aplican juntos con TransaccionesPago.aplicarEstados()
+ *   (un UPDATE por estado destino y uno para los pedidos).
+ * - Lo que sigue PENDIENTE después de reconciliacion.abandono-horas se da por FALLIDO,
+ *   también si nunca llegó a tener Payment Intent.
+ *
+ * El disparo manual (solicitar()) corre el ciclo en un hilo propio y responde
+ * enseguida; nunca hay dos ciclos a la vez y quien llega con uno en curso no espera.
+ */
+@Component
+public class ConciliadorPagos {
+
+    private static final List<String> SIN_RESOLVER = List.of("PENDIENTE", "PROCESANDO");
+    private static final LocalDateTime FECHA_INICIAL = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final int MAX_LISTADOS_POR_PAGINA = 5;
+    private static final long MARGEN_SEGUNDOS = 120; // relojes de Stripe y del servidor
+
+    @Autowired
+    private TransaccionRepository transaccionRepository;
+
+    @Autowired
+    private TransaccionesPago transaccionesPago;
+
+    @Autowired
+    private PasarelaStripe pasarelaStripe;
+
+    @Value("${reconciliacion.activa:true}")
+    private boolean activa;
+
+    @Value("${reconciliacion.edad-minima-min:15}")
+    private long edadMinimaMinutos;
+
+    @Value("${reconciliacion.pagina:100}")
+    private int tamanoPagina;
+
+    @Value("${reconciliacion.max-por-ciclo:1000}")
+    private int maxPorCiclo;
+
+    @Value("${reconciliacion.llamadas-por-segundo:5}")
+    private double llamadasPorSegundo;
+
+    @Value("${reconciliacion.abandono-horas:24}")
+    private long abandonoHoras;
+
+    private final ExecutorService disparoManual = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "conciliacion-manual");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Un solo ciclo a la vez (programado o manual) y como mucho un disparo manual encolado
+    private final ReentrantLock ciclo = new ReentrantLock();
+    private final AtomicBoolean solicitada = new AtomicBoolean(false);
+
+    // Posición del recorrido entre ciclos (vuelve al principio al llegar al final)
+    private LocalDateTime cursorFecha = FECHA_INICIAL;
+    private long cursorId = 0;
+    private long proximaLlamada = 0;
+
+    // Métricas del último ciclo y acumuladas
+    private volatile LocalDateTime ultimaEjecucion;
+    private volatile long duracionMs;
+    private volatile int revisadas;
+    private volatile int actualizadas;
+    private volatile int llamadasStripe;
+    private volatile int consultasSueltas;
+    private volatile String ultimoError;
+    private final AtomicLong ciclos = new AtomicLong();
+    private final AtomicLong totalRevisadas = new AtomicLong();
+    private final AtomicLong totalActualizadas = new AtomicLong();
+    private final AtomicLong totalLlamadasStripe = new AtomicLong();
+    private final AtomicLong totalConsultasSueltas = new AtomicLong();
+    private final AtomicLong listadosAlTope = new AtomicLong();
+    private final AtomicLong errores = new AtomicLong();
+
+    @Scheduled(fixedDelayString = "${reconciliacion.intervalo-ms:60000}",
+            initialDelayString = "${reconciliacion.intervalo-ms:60000}")
+    public void programada() {
+        if (activa) {
+            conciliar();
+        }
+    }
+
+    /**
+     * Pide un ciclo sin esperarlo: devuelve el estado actual y el ciclo corre en
+     * segundo plano. Si ya hay uno en curso o pedido, no se encola otro.
+     */
+    public Map<String, Object> solicitar() {
+        if (!ciclo.isLocked() && solicitada.compareAndSet(false, true)) {
+            disparoManual.execute(() -> {
+                try {
+                    conciliar();
+                } finally {
+                    solicitada.set(false);
+                }
+            });
+        }
+        return estado();
+    }
+
+    // Un ciclo: hasta max-por-ciclo transacciones. Si ya hay otro en curso no corre y devuelve el estado
+    public Map<String, Object> conciliar() {
+        if (!ciclo.tryLock()) {
+            return estado();
+        }
+        try {
+            return ejecutarCiclo();
+        } finally {
+            ciclo.unlock();
+        }
+    }
+
+    private Map<String, Object> ejecutarCiclo() {
+        long inicio = System.currentTimeMillis();
+        LocalDateTime hasta = LocalDateTime.now().minusMinutes(edadMinimaMinutos);
+        int revisadasCiclo = 0;
+        int actualizadasCiclo = 0;
+        int[] llamadas = {0};
+        int[] sueltas = {0};
+        ultimoError = null;
+
+        try {
+            while (revisadasCiclo < maxPorCiclo) {
+                int limite = Math.min(tamanoPagina, maxPorCiclo - revisadasCiclo);
+                List<Transaccion> pagina = transaccionRepository.findSinResolverDespuesDe(
+                        SIN_RESOLVER, hasta, cursorFecha, cursorId, PageRequest.of(0, limite));
+                if (pagina.isEmpty()) {
+                    reiniciarCursor();
+                    break;
+                }
+
+                actualizadasCiclo += abandonarSinPaymentIntent(pagina);
+                actualizadasCiclo += transaccionesPago.aplicarEstados(revisar(pagina, llamadas, sueltas));
+                revisadasCiclo += pagina.size();
+
+                Transaccion ultima = pagina.get(pagina.size() - 1);
+                cursorFecha = ultima.getFechaCreacion();
+                cursorId = ultima.getId();
+                if (pagina.size() < limite) {
+                    reiniciarCursor();
+                    break;
+                }
+            }
+        } catch (StripeException | RuntimeException e) {
+            // Se corta el ciclo sin mover el cursor: la página se repite en el próximo
+            errores.incrementAndGet();
+            ultimoError = e.getMessage();
+            System.out.println("❌ Error en conciliación de pagos: " + e.getMessage());
+        }
+
+        ultimaEjecucion = LocalDateTime.now();
+        duracionMs = System.currentTimeMillis() - inicio;
+        revisadas = revisadasCiclo;
+        actualizadas = actualizadasCiclo;
+        llamadasStripe = llamadas[0];
+        consultasSueltas = sueltas[0];
+        ciclos.incrementAndGet();
+        totalRevisadas.addAndGet(revisadasCiclo);
+        totalActualizadas.addAndGet(actualizadasCiclo);
+        totalLlamadasStripe.addAndGet(llamadas[0]);
+        totalConsultasSueltas.addAndGet(sueltas[0]);
+
+        if (revisadasCiclo > 0) {
+            System.out.println("🔄 Conciliación de pagos: " + revisadasCiclo + " revisadas, "
+                    + actualizadasCiclo + " actualizadas, " + llamadas[0] + " llamadas a Stripe en " + duracionMs + " ms");
+        }
+        return estado();
+    }
+
+    // Sin Payment Intent no hay nada que preguntar a Stripe: solo aplica la regla de abandono
+    private int abandonarSinPaymentIntent(List<Transaccion> pagina) {
+        LocalDateTime limiteAbandono = LocalDateTime.now().minusHours(abandonoHoras);
+        List<Long> abandonadas = pagina.stream()
+                .filter(t -> t.getStripePaymentIntentId() == null && t.getFechaCreacion().isBefore(limiteAbandono))
+                .map(Transaccion::getId)
+                .toList();
+        return abandonadas.isEmpty() ? 0 : transaccionesPago.abandonarSinPaymentIntent(abandonadas,
+                "Abandonado: sin Payment Intent tras " + abandonoHoras + " horas");
+    }
+
+    // Estado que corresponde a cada transacción de la página según Stripe (solo las que cambian)
+    private Map<String, TransaccionesPago.Cambio> revisar(List<Transaccion> pagina, int[] llamadas, int[] sueltas)
+            throws StripeException {
+        Map<String, Transaccion> porPaymentIntent = new LinkedHashMap<>();
+        long desde = Long.MAX_VALUE;
+        long hasta = 0;
+        for (Transaccion trans : pagina) {
+            if (trans.getStripePaymentIntentId() == null) {
+                continue;
+            }
+            porPaymentIntent.put(trans.getStripePaymentIntentId(), trans);
+            long creada = trans.getFechaCreacion().atZone(ZoneId.systemDefault()).toEpochSecond();
+            desde = Math.min(desde, creada);
+            hasta = Math.max(hasta, creada);
+        }
+        if (porPaymentIntent.isEmpty()) {
+            return Map.of();
+        }
+
+        // Listado por rango de creación: hasta 100 Payment Intents por llamada
+        Map<String, PaymentIntent> encontrados = new HashMap<>();
+        String despuesDe = null;
+        for (int listados = 0; ; listados++) {
+            if (listados == MAX_LISTADOS_POR_PAGINA) {
+                listadosAlTope.incrementAndGet();
+                break;
+            }
+            esperarTurno(llamadas);
+            StripeCollection<PaymentIntent> lista = pasarelaStripe.listarPaymentIntents(
+                    desde - MARGEN_SEGUNDOS, hasta + MARGEN_SEGUNDOS, despuesDe);
+            for (PaymentIntent paymentIntent : lista.getData()) {
+                if (porPaymentIntent.containsKey(paymentIntent.getId())) {
+                    encontrados.put(paymentIntent.getId(), paymentIntent);
+                }
+            }
+            if (!Boolean.TRUE.equals(lista.getHasMore()) || lista.getData().isEmpty()
+                    || encontrados.size() == porPaymentIntent.size()) {
+                break;
+            }
+            despuesDe = lista.getData().get(lista.getData().size() - 1).getId();
+        }
+
+        // Los que no salieron en el listado (cuenta con mucho movimiento en ese rango): uno por uno
+        for (String paymentIntentId : porPaymentIntent.keySet()) {
+            if (!encontrados.containsKey(paymentIntentId)) {
+                esperarTurno(llamadas);
+                sueltas[0]++;
+                try {
+                    encontrados.put(paymentIntentId, pasarelaStripe.obtenerPaymentIntent(paymentIntentId));
+                } catch (StripeException e) {
+                    if (e.getStatusCode() == null || e.getStatusCode() != 404) {
+                        throw e;
+                    }
+                    // No existe en Stripe: queda a cargo de la regla de abandono
+                }
+            }
+        }
+
+        LocalDateTime limiteAbandono = LocalDateTime.now().minusHours(abandonoHoras);
+        Map<String, TransaccionesPago.Cambio> cambios = new LinkedHashMap<>();
+        for (Transaccion trans : porPaymentIntent.values()) {
+            TransaccionesPago.Cambio cambio = cambioSegunStripe(encontrados.get(trans.getStripePaymentIntentId()));
+            if ((cambio == null || "PENDIENTE".equals(cambio.estado))
+                    && trans.getFechaCreacion().isBefore(limiteAbandono)) {
+                cambio = new TransaccionesPago.Cambio("FALLIDO",
+                        "Abandonado: sin pago tras " + abandonoHoras + " horas");
+            }
+            if (cambio != null && !cambio.estado.equals(trans.getEstado())) {
+                cambios.put(trans.getStripePaymentIntentId(), cambio);
+            }
+        }
+        return cambios;
+    }
+
+    // Igual que los webhooks: un intento rechazado que espera otro método de pago cuenta como FALLIDO
+    private static TransaccionesPago.Cambio cambioSegunStripe(PaymentIntent paymentIntent) {
+        if (paymentIntent == null) {
+            return null;
+        }
+        String estado = PasarelaStripe.estadoTransaccion(paymentIntent);
+        if ("FALLIDO".equals(estado)) {
+            return new TransaccionesPago.Cambio(estado, "Cancelado en Stripe");
+        }
+        if ("PENDIENTE".equals(estado) && paymentIntent.getLastPaymentError() != null) {
+            return new TransaccionesPago.Cambio("FALLIDO", paymentIntent.getLastPaymentError().getMessage());
+        }
+        return new TransaccionesPago.Cambio(estado, null);
+    }
+
+    // Espacia las llamadas a Stripe para no gastar el límite de peticiones que usan los pagos en curso
+    private void esperarTurno(int[] llamadas) {
+        long intervaloMs = (long) (1000 / llamadasPorSegundo);
+        long espera = proximaLlamada - System.currentTimeMillis();
+        if (espera > 0) {
+            try {
+                Thread.sleep(espera);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Conciliación interrumpida");
+            }
+        }
+        proximaLlamada = System.currentTimeMillis() + intervaloMs;
+        llamadas[0]++;
+    }
+
+    private void reiniciarCursor() {
+        cursorFecha = FECHA_INICIAL;
+        cursorId = 0;
+    }
+
+    public Map<String, Object> estado() {
+        Map<String, Object> estado = new LinkedHashMap<>();
+        estado.put("activa", activa);
+        estado.put("enCurso", ciclo.isLocked() || solicitada.get());
+        estado.put("ultimaEjecucion", ultimaEjecucion);
+        estado.put("duracionMs", duracionMs);
+        estado.put("revisadas", revisadas);
+        estado.put("actualizadas", actualizadas);
+        estado.put("llamadasStripe", llamadasStripe);
+        estado.put("consultasSueltas", consultasSueltas);
+        estado.put("revisadasPorSegundo", duracionMs > 0 ? Math.round(revisadas * 1000.0 / duracionMs) : 0);
+        estado.put("ciclos", ciclos.get());
+        estado.put("totalRevisadas", totalRevisadas.get());
+        estado.put("totalActualizadas", totalActualizadas.get());
+        estado.put("totalLlamadasStripe", totalLlamadasStripe.get());
+        estado.put("totalConsultasSueltas", totalConsultasSueltas.get());
+        // Páginas cuyo rango tenía más de MAX_LISTADOS_POR_PAGINA x 100 Payment Intents
+        estado.put("listadosAlTope", listadosAlTope.get());
+        estado.put("errores", errores.get());
+        estado.put("ultimoError", ultimoError);
+
+        // Retraso: antigüedad de la transacción sin resolver más vieja
+        LocalDateTime masAntigua = transaccionRepository.findFechaMasAntigua(SIN_RESOLVER);
+        estado.put("retrasoSegundos", masAntigua != null
+                ? Duration.between(masAntigua, LocalDateTime.now()).getSeconds() : 0);
+        return estado;
+    }
+
+    @PreDestroy
+    public void detener() {
+        disparoManual.shutdownNow();
+    }
+}
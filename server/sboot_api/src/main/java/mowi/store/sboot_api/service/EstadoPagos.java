@@ -0,0 +1,190 @@
+package mowi.store.sboot_api.service;
+
+import mowi.store.sboot_api.model.Transaccion;
+import mowi.store.sboot_api.repository.TransaccionRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Estado de pago por pedido, en memoria (modelo de lectura).
+ *
+ * Se actualiza en cada cambio de una Transaccion (creación en PagoStripeService y
+ * cambios de estado en TransaccionesPago); la base solo se lee la primera vez que
+ * se pregunta por un pedido. Pensado para una sola instancia del servidor.
+ *
+ * Long-polling: esperar() deja la petición aparcada (DeferredResult, sin hilo de
+ * Tomcat) hasta que el estado cambie respecto al que ya conoce el cliente o se
+ * venza el plazo; en ambos casos responde con el estado actual.
+ */
+@Component
+public class EstadoPagos {
+
+    public static final String SIN_PAGO = "SIN_PAGO";
+
+    @Autowired
+    private TransaccionRepository transaccionRepository;
+
+    @Value("${pagos.espera.max-ms:25000}")
+    private long esperaMaximaMs;
+
+    @Value("${pagos.espera.max-clientes:10000}")
+    private int maxEsperando;
+
+    @Value("${pagos.estado.inactividad-min:60}")
+    private long inactividadMinutos;
+
+    private final Map<Long, EstadoPago> porPedido = new ConcurrentHashMap<>();
+    private final Map<Long, Queue<DeferredResult<Map<String, Object>>>> esperando = new ConcurrentHashMap<>();
+    private final AtomicInteger cantidadEsperando = new AtomicInteger();
+
+    public Map<String, Object> obtener(Long pedidoId) {
+        return cargar(pedidoId).aMapa();
+    }
+
+    /**
+     * Responde en cuanto el estado del pedido sea distinto de estadoConocido
+     * (al instante si ya lo es) o al vencer el plazo.
+     */
+    public DeferredResult<Map<String, Object>> esperar(Long pedidoId, String estadoConocido, Long plazoMs) {
+        long plazo = plazoMs == null || plazoMs <= 0 ? esperaMaximaMs : Math.min(plazoMs, esperaMaximaMs);
+        DeferredResult<Map<String, Object>> resultado = new DeferredResult<>(plazo);
+
+        EstadoPago actual = cargar(pedidoId);
+        if (estadoConocido == null || !estadoConocido.equals(actual.estado)
+                || cantidadEsperando.get() >= maxEsperando) {
+            resultado.setResult(actual.aMapa());
+            return resultado;
+        }
+
+        Queue<DeferredResult<Map<String, Object>>> cola =
+                esperando.computeIfAbsent(pedidoId, id -> new ConcurrentLinkedQueue<>());
+        cola.add(resultado);
+        cantidadEsperando.incrementAndGet();
+        resultado.onTimeout(() -> resultado.setResult(cargar(pedidoId).aMapa()));
+        resultado.onCompletion(() -> {
+            if (cola.remove(resultado)) {
+                cantidadEsperando.decrementAndGet();
+            }
+        });
+
+        // El estado pudo cambiar entre la lectura y el registro en la cola
+        EstadoPago ahora = porPedido.get(pedidoId);
+        if (ahora != null && !estadoConocido.equals(ahora.estado)) {
+            resultado.setResult(ahora.aMapa());
+        }
+        return resultado;
+    }
+
+    /**
+     * Registra el estado de una transacción (llamar después del commit) y despierta
+     * a los clientes que esperaban un cambio en ese pedido.
+     */
+    public void actualizar(Transaccion trans) {
+        EstadoPago nuevo = new EstadoPago(trans);
+        EstadoPago vigente = porPedido.merge(trans.getPedidoId(), nuevo, EstadoPago::masReciente);
+        if (vigente != nuevo) {
+            return; // llegó tarde: ya había un estado más nuevo
+        }
+        Queue<DeferredResult<Map<String, Object>>> cola = esperando.get(trans.getPedidoId());
+        if (cola != null) {
+            Map<String, Object> respuesta = nuevo.aMapa();
+            DeferredResult<Map<String, Object>> resultado;
+            while ((resultado = cola.poll()) != null) {
+                cantidadEsperando.decrementAndGet();
+                resultado.setResult(respuesta);
+            }
+        }
+    }
+
+    public int getCantidadEsperando() {
+        return cantidadEsperando.get();
+    }
+
+    // Pedido leído de la base solo la primera vez (la transacción más reciente)
+    private EstadoPago cargar(Long pedidoId) {
+        EstadoPago estado = porPedido.computeIfAbsent(pedidoId, id ->
+                transaccionRepository.findFirstByPedidoIdOrderByIdDesc(id)
+                        .map(EstadoPago::new)
+                        .orElseGet(() -> EstadoPago.sinPago(id)));
+        estado.ultimoAcceso = System.currentTimeMillis();
+        return estado;
+    }
+
+    // Saca de memoria los pedidos que nadie consulta hace rato (se recargan si vuelven a preguntar)
+    @Scheduled(fixedDelayString = "${pagos.estado.limpieza-ms:300000}")
+    public void limpiar() {
+        long limite = System.currentTimeMillis() - inactividadMinutos * 60_000L;
+        porPedido.entrySet().removeIf(e -> e.getValue().ultimoAcceso < limite
+                && esperando.getOrDefault(e.getKey(), new ConcurrentLinkedQueue<>()).isEmpty());
+        esperando.entrySet().removeIf(e -> e.getValue().isEmpty());
+    }
+
+    private static class EstadoPago {
+        final Long pedidoId;
+        final Long transaccionId; // 0 si el pedido aún no tiene pago
+        final String estado;
+        final Double monto;
+        final LocalDateTime fechaPago;
+        final String metodoPago;
+        volatile long ultimoAcceso = System.currentTimeMillis();
+
+        EstadoPago(Transaccion trans) {
+            this(trans.getPedidoId(), trans.getId(), trans.getEstado(), trans.getMonto(),
+                    trans.getFechaPago(), trans.getMetodoPago());
+        }
+
+        EstadoPago(Long pedidoId, Long transaccionId, String estado, Double monto,
+                   LocalDateTime fechaPago, String metodoPago) {
+            this.pedidoId = pedidoId;
+            this.transaccionId = transaccionId;
+            this.estado = estado;
+            this.monto = monto;
+            this.fechaPago = fechaPago;
+            this.metodoPago = metodoPago;
+        }
+
+        static EstadoPago sinPago(Long pedidoId) {
+            return new EstadoPago(pedidoId, 0L, SIN_PAGO, null, null, null);
+        }
+
+        /*
+         * Gana la transacción más nueva del pedido; dentro de la misma, EXITOSO es
+         * final (un aviso de PROCESANDO que se publica tarde no lo pisa).
+         */
+        static EstadoPago masReciente(EstadoPago actual, EstadoPago nuevo) {
+            if (nuevo.transaccionId < actual.transaccionId) {
+                return actual;
+            }
+            if (nuevo.transaccionId.equals(actual.transaccionId)
+                    && "EXITOSO".equals(actual.estado) && !"EXITOSO".equals(nuevo.estado)) {
+                return actual;
+            }
+            return nuevo;
+        }
+
+        Map<String, Object> aMapa() {
+            Map<String, Object> respuesta = new LinkedHashMap<>();
+            respuesta.put("estado", estado);
+            respuesta.put("pedidoId", pedidoId);
+            if (SIN_PAGO.equals(estado)) {
+                respuesta.put("error", "No hay pago registrado para este pedido");
+                return respuesta;
+            }
+            respuesta.put("monto", monto);
+            respuesta.put("fechaPago", fechaPago);
+            respuesta.put("metodoPago", metodoPago);
+            return respuesta;
+        }
+    }
+}
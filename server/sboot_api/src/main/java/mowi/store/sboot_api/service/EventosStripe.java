@@ -0,0 +1,201 @@
+package mowi.store.sboot_api.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.stripe.exception.SignatureVerificationException;
+import com.stripe.net.Webhook;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Recepción de webhooks de Stripe (payment_intent.*).
+ *
+ * El endpoint solo verifica la firma, lee lo necesario del evento y lo encola:
+ * responde a Stripe en milisegundos. Un pool acotado de hilos aplica los eventos
+ * sobre Transaccion y Pedido (TransaccionesPago, idempotente).
+ *
+ * Con la cola llena el evento se rechaza (503) y Stripe lo reintenta más tarde.
+ * Los IDs de eventos recientes se recuerdan para no procesar dos veces una reentrega.
+ */
+@Component
+public class EventosStripe {
+
+    private static final int EVENTOS_RECORDADOS = 10_000;
+    private static final int INTENTOS = 3;
+
+    private final String secreto;
+    private final long toleranciaSeg;
+    private final Consumer<EventoPago> procesador;
+    private final ThreadPoolExecutor trabajadores;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicInteger procesados = new AtomicInteger();
+    private final AtomicInteger fallidos = new AtomicInteger();
+
+    // IDs de eventos ya encolados (LRU)
+    private final Map<String, Boolean> recientes = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> mayor) {
+            return size() > EVENTOS_RECORDADOS;
+        }
+    };
+
+    @Autowired
+    public EventosStripe(@Value("${stripe.webhook.secreto:}") String secreto,
+                         @Value("${stripe.webhook.tolerancia-seg:300}") long toleranciaSeg,
+                         @Value("${stripe.webhook.hilos:2}") int hilos,
+                         @Value("${stripe.webhook.cola:1000}") int capacidadCola,
+                         TransaccionesPago transaccionesPago) {
+        this(secreto, toleranciaSeg, hilos, capacidadCola,
+                evento -> transaccionesPago.aplicarEstado(evento.paymentIntentId, evento.estado, evento.detalleError));
+    }
+
+    EventosStripe(String secreto, long toleranciaSeg, int hilos, int capacidadCola, Consumer<EventoPago> procesador) {
+        this.secreto = secreto;
+        this.toleranciaSeg = toleranciaSeg;
+        this.procesador = procesador;
+        AtomicInteger numero = new AtomicInteger();
+        this.trabajadores = new ThreadPoolExecutor(hilos, hilos, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capacidadCola),
+                r -> {
+                    Thread hilo = new Thread(r, "stripe-webhook-" + numero.incrementAndGet());
+                    hilo.setDaemon(true);
+                    return hilo;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public boolean configurado() {
+        return secreto != null && !secreto.isBlank();
+    }
+
+    /**
+     * Verifica la firma (cabecera Stripe-Signature) y devuelve el evento de pago,
+     * o null si es un tipo de evento que no nos interesa.
+     */
+    public EventoPago verificar(String payload, String firma) {
+        if (!configurado()) {
+            throw new RuntimeException("Webhook de Stripe no configurado (stripe.webhook.secreto)");
+        }
+        if (firma == null || firma.isBlank()) {
+            throw new RuntimeException("Falta la cabecera Stripe-Signature");
+        }
+        try {
+            Webhook.Signature.verifyHeader(payload, firma, secreto, toleranciaSeg);
+        } catch (SignatureVerificationException e) {
+            throw new RuntimeException("Firma de Stripe inválida: " + e.getMessage());
+        }
+
+        // Se lee el JSON directamente: no depende de la versión de API del SDK
+        JsonNode evento;
+        try {
+            evento = objectMapper.readTree(payload);
+        } catch (Exception e) {
+            throw new RuntimeException("Evento de Stripe ilegible");
+        }
+        String estado = switch (evento.path("type").asText()) {
+            case "payment_intent.succeeded" -> "EXITOSO";
+            case "payment_intent.processing" -> "PROCESANDO";
+            case "payment_intent.payment_failed", "payment_intent.canceled" -> "FALLIDO";
+            default -> null;
+        };
+        if (estado == null) {
+            return null;
+        }
+        JsonNode intent = evento.path("data").path("object");
+        String detalleError = intent.path("last_payment_error").path("message").asText(null);
+        if (detalleError == null && "payment_intent.canceled".equals(evento.path("type").asText())) {
+            detalleError = "Cancelado: " + intent.path("cancellation_reason").asText("sin motivo");
+        }
+        return new EventoPago(evento.path("id").asText(), intent.path("id").asText(), estado, detalleError);
+    }
+
+    /**
+     * Encola el evento para los trabajadores. false si la cola está llena
+     * (hay que responder con error para que Stripe reintente).
+     */
+    public boolean encolar(EventoPago evento) {
+        synchronized (recientes) {
+            if (recientes.putIfAbsent(evento.eventoId, Boolean.TRUE) != null) {
+                return true; // reentrega de un evento ya encolado
+            }
+        }
+        try {
+            trabajadores.execute(() -> procesar(evento));
+            return true;
+        } catch (RejectedExecutionException e) {
+            olvidar(evento);
+            System.out.println("⚠️ Cola de webhooks llena, Stripe reintentará: " + evento.eventoId);
+            return false;
+        }
+    }
+
+    private void procesar(EventoPago evento) {
+        for (int intento = 1; intento <= INTENTOS; intento++) {
+            try {
+                procesador.accept(evento);
+                procesados.incrementAndGet();
+                return;
+            } catch (Exception e) {
+                System.out.println("❌ Error aplicando evento " + evento.eventoId
+                        + " (intento " + intento + "): " + e.getMessage());
+                try {
+                    Thread.sleep(500L * intento);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        fallidos.incrementAndGet();
+        // Si Stripe lo vuelve a enviar se acepta de nuevo
+        olvidar(evento);
+    }
+
+    private void olvidar(EventoPago evento) {
+        synchronized (recientes) {
+            recientes.remove(evento.eventoId);
+        }
+    }
+
+    public Map<String, Object> estado() {
+        Map<String, Object> estado = new LinkedHashMap<>();
+        estado.put("configurado", configurado());
+        estado.put("enCola", trabajadores.getQueue().size());
+        estado.put("procesando", trabajadores.getActiveCount());
+        estado.put("procesados", procesados.get());
+        estado.put("fallidos", fallidos.get());
+        return estado;
+    }
+
+    // Termina los eventos ya aceptados antes de apagar
+    @PreDestroy
+    public void alDetener() throws InterruptedException {
+        trabajadores.shutdown();
+        trabajadores.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    public static class EventoPago {
+        public final String eventoId;
+        public final String paymentIntentId;
+        public final String estado; // EXITOSO, PROCESANDO o FALLIDO
+        public final String detalleError;
+
+        public EventoPago(String eventoId, String paymentIntentId, String estado, String detalleError) {
+            this.eventoId = eventoId;
+            this.paymentIntentId = paymentIntentId;
+            this.estado = estado;
+            this.detalleError = detalleError;
+        }
+    }
+}
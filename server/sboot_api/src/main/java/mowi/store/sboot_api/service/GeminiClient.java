@@ -0,0 +1,202 @@
+package mowi.store.sboot_api.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Cliente HTTP no bloqueante para generateContent de Gemini.
+ *
+ * - La llamada es asíncrona (java.net.http): ningún hilo de Tomcat espera al modelo.
+ * - Timeouts de conexión y un plazo total por llamada.
+ * - Bulkhead: como máximo N llamadas simultáneas; el resto se rechaza al instante.
+ * - Circuit breaker: tras varios fallos seguidos deja de llamar durante un tiempo.
+ * - Variante en streaming (streamGenerateContent con SSE) que entrega el texto por fragmentos.
+ *
+ * Cuando la llamada se rechaza o falla, el futuro termina con excepción y el
+ * llamador decide el plan B (búsqueda local).
+ */
+@Component
+public class GeminiClient {
+
+    private final String url;
+    private final String urlStream;
+    private final String apiKey;
+    private final Duration plazo;
+    private final HttpClient httpClient;
+    private final Semaphore bulkhead;
+    private final CircuitBreaker circuitBreaker;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Autowired
+    public GeminiClient(@Value("${gemini.generate.url}") String url,
+                        @Value("${gemini.stream.url}") String urlStream,
+                        @Value("${gemini.api.key}") String apiKey,
+                        @Value("${gemini.timeout.conexion-ms:2000}") long timeoutConexionMs,
+                        @Value("${gemini.timeout.total-ms:8000}") long plazoMs,
+                        @Value("${gemini.max-concurrentes:16}") int maxConcurrentes,
+                        @Value("${gemini.circuito.fallos:5}") int umbralFallos,
+                        @Value("${gemini.circuito.espera-ms:30000}") long esperaMs) {
+        this.url = url;
+        this.urlStream = urlStream;
+        this.apiKey = apiKey;
+        this.plazo = Duration.ofMillis(plazoMs);
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(timeoutConexionMs))
+                .build();
+        this.bulkhead = new Semaphore(maxConcurrentes);
+        this.circuitBreaker = new CircuitBreaker("gemini", umbralFallos, Duration.ofMillis(esperaMs));
+    }
+
+    /**
+     * Envía el prompt y devuelve el texto del primer candidato ("" si no hay).
+     */
+    public CompletableFuture<String> generarContenido(String prompt) {
+        return ejecutar(url, prompt, HttpResponse.BodyHandlers.ofString(), this::leerTexto);
+    }
+
+    /**
+     * Igual que generarContenido() pero en streaming: cada fragmento de texto se
+     * entrega a alFragmento en cuanto llega. El futuro termina con el texto completo.
+     */
+    public CompletableFuture<String> generarContenidoStream(String prompt, Consumer<String> alFragmento) {
+        LectorSse lector = new LectorSse(alFragmento);
+        return ejecutar(urlStream, prompt, HttpResponse.BodyHandlers.fromLineSubscriber(lector), response -> {
+            verificarStatus(response.statusCode());
+            return lector.completo.toString();
+        });
+    }
+
+    // Bulkhead + circuit breaker + plazo alrededor de una llamada HTTP
+    private <T> CompletableFuture<String> ejecutar(String destino, String prompt,
+                                                   HttpResponse.BodyHandler<T> handler,
+                                                   Function<HttpResponse<T>, String> lectura) {
+        if (!bulkhead.tryAcquire()) {
+            return CompletableFuture.failedFuture(new RuntimeException("Gemini saturado: demasiadas búsquedas simultáneas"));
+        }
+        if (!circuitBreaker.permitirLlamada()) {
+            bulkhead.release();
+            return CompletableFuture.failedFuture(new RuntimeException("Gemini no disponible (circuito abierto)"));
+        }
+
+        try {
+            Map<String, Object> requestBody = Map.of(
+                    "contents", List.of(Map.of("parts", List.of(Map.of("text", prompt))))
+            );
+            String separador = destino.contains("?") ? "&" : "?";
+            HttpRequest request = HttpRequest.newBuilder(URI.create(destino + separador + "key=" + apiKey))
+                    .timeout(plazo)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(requestBody)))
+                    .build();
+
+            System.out.println("🔍 Llamando a Gemini: " + destino);
+
+            return httpClient.sendAsync(request, handler)
+                    .orTimeout(plazo.toMillis(), TimeUnit.MILLISECONDS)
+                    .thenApply(lectura)
+                    .whenComplete((texto, error) -> {
+                        bulkhead.release();
+                        if (error == null) {
+                            circuitBreaker.registrarExito();
+                        } else {
+                            circuitBreaker.registrarFallo();
+                            System.out.println("❌ Error llamando a Gemini: " + error.getMessage());
+                        }
+                    });
+        } catch (Exception e) {
+            bulkhead.release();
+            circuitBreaker.registrarFallo();
+            return CompletableFuture.failedFuture(new RuntimeException("Error llamando a Gemini: " + e.getMessage(), e));
+        }
+    }
+
+    public CircuitBreaker.Estado getEstadoCircuito() {
+        return circuitBreaker.getEstado();
+    }
+
+    private String leerTexto(HttpResponse<String> response) {
+        verificarStatus(response.statusCode());
+        System.out.println("✅ Respuesta de Gemini recibida");
+        return textoDelCandidato(response.body());
+    }
+
+    private void verificarStatus(int status) {
+        if (status / 100 != 2) {
+            throw new RuntimeException("Gemini respondió HTTP " + status);
+        }
+    }
+
+    // candidates[0].content.parts[0].text de una respuesta (o de un fragmento del stream)
+    private String textoDelCandidato(String json) {
+        try {
+            JsonNode texto = objectMapper.readTree(json)
+                    .path("candidates").path(0)
+                    .path("content").path("parts").path(0)
+                    .path("text");
+            return texto.isTextual() ? texto.asText() : "";
+        } catch (Exception e) {
+            throw new RuntimeException("Respuesta de Gemini inválida: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Lee el stream SSE línea por línea ("data: {...}") sin bloquear ningún hilo.
+     */
+    private class LectorSse implements Flow.Subscriber<String> {
+        private final Consumer<String> alFragmento;
+        private final StringBuilder completo = new StringBuilder();
+
+        LectorSse(Consumer<String> alFragmento) {
+            this.alFragmento = alFragmento;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(String linea) {
+            if (!linea.startsWith("data:")) {
+                return; // líneas vacías, comentarios o campos SSE que no usamos
+            }
+            String fragmento;
+            try {
+                fragmento = textoDelCandidato(linea.substring(5).trim());
+            } catch (RuntimeException e) {
+                System.out.println("⚠️ Fragmento de Gemini ignorado: " + e.getMessage());
+                return;
+            }
+            if (!fragmento.isEmpty()) {
+                completo.append(fragmento);
+                alFragmento.accept(fragmento);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            // El error llega también al futuro de sendAsync
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package mowi.store.sboot_api.service;
+
+import mowi.store.sboot_api.model.Producto;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Índice invertido en memoria sobre nombre, descripción y categoría de los productos.
+ *
+ * - Tokeniza por letras/dígitos, pasa a minúsculas y quita tildes ("Cámara" -> "camara").
+ * - Cada término de la consulta se busca como prefijo ("lap" encuentra "laptop").
+ * - Se actualiza de forma incremental: solo se reindexan los productos cuyo texto cambió.
+ */
+@Component
+public class IndiceBusqueda {
+
+    // Campos indexados (máscara de bits) y su peso en la puntuación
+    static final int CAMPO_NOMBRE = 1;
+    static final int CAMPO_CATEGORIA = 2;
+    static final int CAMPO_DESCRIPCION = 4;
+    static final int TODOS_LOS_CAMPOS = CAMPO_NOMBRE | CAMPO_CATEGORIA | CAMPO_DESCRIPCION;
+
+    // término -> (productoId -> campos donde aparece)
+    private final ConcurrentSkipListMap<String, Map<Long, Integer>> terminos = new ConcurrentSkipListMap<>();
+
+    // productoId -> términos indexados (para poder quitarlos al reindexar)
+    private final Map<Long, Set<String>> terminosPorProducto = new ConcurrentHashMap<>();
+
+    // productoId -> firma del texto indexado (detecta si hace falta reindexar)
+    private final Map<Long, Integer> firmas = new ConcurrentHashMap<>();
+
+    /**
+     * Alinea el índice con el catálogo: agrega/reindexa los productos cuyo texto
+     * cambió y elimina los que ya no existen. Lo invoca un único hilo a la vez.
+     */
+    public synchronized void sincronizar(Collection<Producto> productos) {
+        Set<Long> vigentes = new HashSet<>();
+        int reindexados = 0;
+
+        for (Producto p : productos) {
+            vigentes.add(p.getId());
+            int firma = firma(p);
+            Integer anterior = firmas.get(p.getId());
+            if (anterior == null || anterior != firma) {
+                quitar(p.getId());
+                indexar(p);
+                firmas.put(p.getId(), firma);
+                reindexados++;
+            }
+        }
+
+        int eliminados = 0;
+        for (Long id : new ArrayList<>(firmas.keySet())) {
+            if (!vigentes.contains(id)) {
+                quitar(id);
+                firmas.remove(id);
+                eliminados++;
+            }
+        }
+
+        if (reindexados > 0 || eliminados > 0) {
+            System.out.println("🔎 Índice de búsqueda actualizado: " + reindexados
+                    + " reindexados, " + eliminados + " eliminados");
+        }
+    }
+
+    /**
+     * Puntuación por producto para la consulta. Todos los términos deben coincidir
+     * (como prefijo) en alguno de los campos indicados. Productos sin coincidencia no aparecen.
+     */
+    public Map<Long, Integer> buscar(String consulta, int campos) {
+        List<String> tokens = tokenizar(consulta);
+        if (tokens.isEmpty()) {
+            return Map.of();
+        }
+
+        Map<Long, Integer> puntuaciones = null;
+        for (String token : tokens) {
+            Map<Long, Integer> delToken = puntuarToken(token, campos);
+
+            if (puntuaciones == null) {
+                puntuaciones = delToken;
+            } else {
+                // Intersección: el producto debe coincidir con todos los términos
+                Map<Long, Integer> acumuladas = puntuaciones;
+                acumuladas.keySet().retainAll(delToken.keySet());
+                acumuladas.replaceAll((id, puntos) -> puntos + delToken.get(id));
+            }
+            if (puntuaciones.isEmpty()) {
+                break;
+            }
+        }
+        return puntuaciones;
+    }
+
+    /**
+     * Igual que buscar() pero basta con que coincida alguno de los términos: la
+     * puntuación es la suma de los términos que coinciden. Útil para consultas en
+     * lenguaje natural, donde no todas las palabras aparecen en el producto.
+     */
+    public Map<Long, Integer> buscarCualquiera(Collection<String> tokens, int campos) {
+        Map<Long, Integer> puntuaciones = new HashMap<>();
+        for (String token : tokens) {
+            puntuarToken(token, campos).forEach((id, puntos) -> puntuaciones.merge(id, puntos, Integer::sum));
+        }
+        return puntuaciones;
+    }
+
+    // Mejor puntuación de cada producto para un término (coincidencia por prefijo, exacta vale el doble)
+    private Map<Long, Integer> puntuarToken(String token, int campos) {
+        Map<Long, Integer> delToken = new HashMap<>();
+        for (Map.Entry<String, Map<Long, Integer>> termino : conPrefijo(token).entrySet()) {
+            boolean exacto = termino.getKey().equals(token);
+            for (Map.Entry<Long, Integer> posting : termino.getValue().entrySet()) {
+                int mascara = posting.getValue() & campos;
+                if (mascara == 0) {
+                    continue;
+                }
+                int puntos = peso(mascara) * (exacto ? 2 : 1);
+                delToken.merge(posting.getKey(), puntos, Math::max);
+            }
+        }
+        return delToken;
+    }
+
+    /**
+     * Normaliza un texto a tokens de búsqueda: minúsculas, sin tildes, solo letras y dígitos.
+     */
+    public static List<String> tokenizar(String texto) {
+        List<String> tokens = new ArrayList<>();
+        if (texto == null || texto.isEmpty()) {
+            return tokens;
+        }
+        String descompuesto = Normalizer.normalize(texto, Normalizer.Form.NFD);
+        StringBuilder actual = new StringBuilder();
+        for (int i = 0; i < descompuesto.length(); i++) {
+            char c = descompuesto.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue; // tilde, diéresis, virgulilla de la ñ...
+            }
+            if (Character.isLetterOrDigit(c)) {
+                actual.append(Character.toLowerCase(c));
+            } else if (actual.length() > 0) {
+                tokens.add(actual.toString());
+                actual.setLength(0);
+            }
+        }
+        if (actual.length() > 0) {
+            tokens.add(actual.toString());
+        }
+        return tokens;
+    }
+
+    private SortedMap<String, Map<Long, Integer>> conPrefijo(String prefijo) {
+        return terminos.subMap(prefijo, true, prefijo + Character.MAX_VALUE, false);
+    }
+
+    private void indexar(Producto p) {
+        Map<String, Integer> camposPorTermino = new HashMap<>();
+        agregarCampo(camposPorTermino, p.getNombre(), CAMPO_NOMBRE);
+        agregarCampo(camposPorTermino, p.getCategoria() != null ? p.getCategoria().getNombre() : null, CAMPO_CATEGORIA);
+        agregarCampo(camposPorTermino, p.getDescripcion(), CAMPO_DESCRIPCION);
+
+        for (Map.Entry<String, Integer> e : camposPorTermino.entrySet()) {
+            terminos.computeIfAbsent(e.getKey(), k -> new ConcurrentHashMap<>()).put(p.getId(), e.getValue());
+        }
+        terminosPorProducto.put(p.getId(), camposPorTermino.keySet());
+    }
+
+    private void agregarCampo(Map<String, Integer> camposPorTermino, String texto, int campo) {
+        for (String token : tokenizar(texto)) {
+            camposPorTermino.merge(token, campo, (a, b) -> a | b);
+        }
+    }
+
+    private void quitar(Long productoId) {
+        Set<String> anteriores = terminosPorProducto.remove(productoId);
+        if (anteriores == null) {
+            return;
+        }
+        for (String termino : anteriores) {
+            terminos.computeIfPresent(termino, (k, postings) -> {
+                postings.remove(productoId);
+                return postings.isEmpty() ? null : postings;
+            });
+        }
+    }
+
+    private static int peso(int mascara) {
+        if ((mascara & CAMPO_NOMBRE) != 0) return 3;
+        if ((mascara & CAMPO_CATEGORIA) != 0) return 2;
+        return 1;
+    }
+
+    private static int firma(Producto p) {
+        return Objects.hash(
+                p.getNombre(),
+                p.getDescripcion(),
+                p.getCategoria() != null ? p.getCategoria().getNombre() : null
+        );
+    }
+}
@@ -0,0 +1,321 @@
+package mowi.store.sboot_api.service;
+
+import mowi.store.sboot_api.model.Producto;
+import mowi.store.sboot_api.model.ProductoFlash;
+import mowi.store.sboot_api.repository.PedidoJdbcRepository;
+import mowi.store.sboot_api.repository.ProductoFlashRepository;
+import mowi.store.sboot_api.repository.ProductoRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Modo venta flash: inventario en memoria para productos muy disputados.
+ *
+ * Con el modo activo, el checkout no toca la fila del producto: la reserva es un
+ * compareAndSet sobre un contador atómico. Un volcado periódico (write-behind)
+ * escribe en lote el stock y los vendidos resultantes en MySQL.
+ *
+ * Recuperación: al activar se guarda la foto del stock y el último detalle de pedido
+ * (ProductoFlash). Al reiniciar, stock = stock inicial - unidades de los detalles
+ * posteriores, así que no se pierde nada aunque quedaran volcados pendientes.
+ *
+ * Mientras dure la venta flash el stock del producto lo manda este servidor:
+ * los cambios hechos desde el admin se pisan en el siguiente volcado.
+ *
+ * Cada checkout retiene un cerrojo de lectura desde reservar() hasta el fin de su
+ * transacción; activar() toma el de escritura, así que la foto del stock nunca
+ * queda a medio camino de un checkout que ya decidió descontar en la base.
+ */
+@Component
+public class InventarioFlash {
+
+    @Autowired
+    private ProductoFlashRepository productoFlashRepository;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private PedidoJdbcRepository pedidoJdbcRepository;
+
+    private final Map<Long, Contador> contadores = new ConcurrentHashMap<>();
+
+    // Checkouts en curso (lectura) frente a la activación de una venta flash (escritura)
+    private final ReentrantReadWriteLock checkouts = new ReentrantReadWriteLock();
+
+    public boolean esFlash(Long productoId) {
+        return contadores.containsKey(productoId);
+    }
+
+    // Al arrancar: reconstruye los contadores desde la foto inicial y los pedidos
+    @EventListener(ApplicationReadyEvent.class)
+    public void recuperar() {
+        try {
+            for (ProductoFlash flash : productoFlashRepository.findAll()) {
+                int vendidos = pedidoJdbcRepository.cantidadVendidaDesde(
+                        flash.getProductoId(), flash.getDetalleDesde());
+                contadores.put(flash.getProductoId(), new Contador(flash, vendidos));
+                System.out.println("⚡ Venta flash recuperada: producto " + flash.getProductoId()
+                        + " (" + vendidos + " vendidos)");
+            }
+            volcar();
+        } catch (Exception e) {
+            System.out.println("❌ Error recuperando ventas flash: " + e.getMessage());
+        }
+    }
+
+    public Map<String, Object> activar(Long productoId) {
+        // Espera a que terminen los checkouts en curso (y frena los nuevos) mientras se toma la foto
+        try {
+            if (!checkouts.writeLock().tryLock(10, TimeUnit.SECONDS)) {
+                throw new RuntimeException("Hay checkouts en curso, intenta activar de nuevo");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Activación de venta flash interrumpida");
+        }
+        try {
+            if (esFlash(productoId)) {
+                throw new RuntimeException("El producto ya está en venta flash");
+            }
+            Producto producto = productoRepository.findById(productoId)
+                    .orElseThrow(() -> new RuntimeException("Producto no encontrado"));
+
+            ProductoFlash flash = productoFlashRepository.save(new ProductoFlash(
+                    productoId, producto.getStock(), producto.getVendidos(),
+                    pedidoJdbcRepository.ultimoDetalleId()));
+            Contador contador = new Contador(flash, 0);
+            contadores.put(productoId, contador);
+
+            System.out.println("⚡ Venta flash activada: producto " + productoId + " (stock " + producto.getStock() + ")");
+            return contador.estado();
+        } finally {
+            checkouts.writeLock().unlock();
+        }
+    }
+
+    public synchronized void desactivar(Long productoId) {
+        Contador contador = contadores.get(productoId);
+        if (contador == null) {
+            throw new RuntimeException("El producto no está en venta flash");
+        }
+        // Volcado final con el contador cerrado y bajo su cerrojo: las compras que confirmen
+        // después descuentan en la base (ver confirmar()) sobre este valor y no al revés.
+        // synchronized en el método: ningún volcar() a medio camino puede pisarlo.
+        synchronized (contador) {
+            contador.cerrado = true;
+            int vendidos = contador.vendidos.get();
+            try {
+                pedidoJdbcRepository.escribirStock(List.of(new PedidoJdbcRepository.StockProducto(productoId,
+                        contador.stockInicial - vendidos, contador.vendidosInicial + vendidos)));
+            } catch (RuntimeException e) {
+                // Sin volcado no se borra nada: la venta flash sigue activa y se puede reintentar
+                contador.cerrado = false;
+                throw new RuntimeException("No se pudo volcar la venta flash, sigue activa: " + e.getMessage());
+            }
+            contador.volcados = vendidos;
+        }
+        productoFlashRepository.deleteById(productoId);
+        contadores.remove(productoId);
+        System.out.println("⚡ Venta flash desactivada: producto " + productoId);
+    }
+
+    /**
+     * Reserva en memoria las unidades de los productos en venta flash (los demás se
+     * ignoran). Si alguno no alcanza no se reserva nada y se informan sus IDs.
+     * Las unidades concedidas se confirman si la transacción hace commit y vuelven
+     * al contador si hace rollback.
+     *
+     * Llamar dentro de la transacción del checkout: hasta que termine, ningún producto
+     * entra en venta flash, así que los que no quedaron en Reserva.enMemoria se
+     * descuentan en la base con la certeza de que siguen siendo de la base.
+     */
+    public Reserva reservar(SortedMap<Long, Integer> cantidadPorProducto) {
+        retenerHastaFinDeTransaccion();
+        Map<Contador, Integer> concedidas = new LinkedHashMap<>();
+        Set<Long> enMemoria = new HashSet<>();
+        List<Long> sinStock = new ArrayList<>();
+
+        for (Map.Entry<Long, Integer> linea : cantidadPorProducto.entrySet()) {
+            Contador contador = contadores.get(linea.getKey());
+            if (contador == null) {
+                continue;
+            }
+            enMemoria.add(linea.getKey());
+            if (contador.tomar(linea.getValue())) {
+                concedidas.put(contador, linea.getValue());
+            } else {
+                sinStock.add(linea.getKey());
+            }
+        }
+
+        if (!sinStock.isEmpty()) {
+            concedidas.forEach(Contador::devolver);
+            return new Reserva(enMemoria, sinStock);
+        }
+        if (concedidas.isEmpty()) {
+            return new Reserva(enMemoria, sinStock);
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) {
+                        concedidas.forEach(InventarioFlash.this::confirmar);
+                    } else {
+                        concedidas.forEach(Contador::devolver);
+                    }
+                }
+            });
+        } else {
+            concedidas.forEach(this::confirmar);
+        }
+        return new Reserva(enMemoria, sinStock);
+    }
+
+    // Cerrojo de lectura hasta el commit o rollback del checkout (ver activar())
+    private void retenerHastaFinDeTransaccion() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        checkouts.readLock().lock();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                checkouts.readLock().unlock();
+            }
+        });
+    }
+
+    private void confirmar(Contador contador, int cantidad) {
+        synchronized (contador) {
+            if (!contador.cerrado) {
+                contador.vendidos.addAndGet(cantidad);
+                return;
+            }
+        }
+        // La venta flash se cerró mientras esta compra estaba en curso. El pedido ya hizo commit:
+        // si la base no tiene stock para descontar queda vendido de más y hay que revisarlo a mano
+        List<Long> sinStock = pedidoJdbcRepository.descontarStock(new TreeMap<>(Map.of(contador.productoId, cantidad)));
+        if (!sinStock.isEmpty()) {
+            System.out.println("❌ Venta flash cerrada: " + cantidad + " unidades del producto " + contador.productoId
+                    + " ya vendidas no se pudieron descontar del stock (sobreventa)");
+        }
+    }
+
+    /**
+     * Write-behind: escribe en un lote el stock y los vendidos de los productos que
+     * cambiaron desde el último volcado. Son valores absolutos, así que un volcado
+     * fallido simplemente se repite en el siguiente ciclo.
+     */
+    @Scheduled(fixedDelayString = "${flash.volcado.ms:500}")
+    public synchronized void volcar() {
+        List<PedidoJdbcRepository.StockProducto> filas = new ArrayList<>();
+        Map<Contador, Integer> volcados = new HashMap<>();
+        for (Contador contador : contadores.values()) {
+            int vendidos = contador.vendidos.get();
+            if (vendidos != contador.volcados) {
+                filas.add(new PedidoJdbcRepository.StockProducto(contador.productoId,
+                        contador.stockInicial - vendidos, contador.vendidosInicial + vendidos));
+                volcados.put(contador, vendidos);
+            }
+        }
+        if (filas.isEmpty()) {
+            return;
+        }
+        try {
+            pedidoJdbcRepository.escribirStock(filas);
+            volcados.forEach((contador, vendidos) -> contador.volcados = vendidos);
+        } catch (Exception e) {
+            System.out.println("❌ Error volcando ventas flash (se reintenta): " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void alDetener() {
+        volcar();
+    }
+
+    public List<Map<String, Object>> estado() {
+        List<Map<String, Object>> estado = new ArrayList<>();
+        for (Contador contador : contadores.values()) {
+            estado.add(contador.estado());
+        }
+        return estado;
+    }
+
+    /**
+     * Resultado de reservar(): productos que maneja el contador en memoria (no se
+     * descuentan en la base) y los que no alcanzaron.
+     */
+    public static class Reserva {
+        public final Set<Long> enMemoria;
+        public final List<Long> sinStock;
+
+        Reserva(Set<Long> enMemoria, List<Long> sinStock) {
+            this.enMemoria = enMemoria;
+            this.sinStock = sinStock;
+        }
+    }
+
+    private static class Contador {
+        final Long productoId;
+        final int stockInicial;
+        final int vendidosInicial;
+        // Unidades que aún se pueden reservar (incluye reservas en curso)
+        final AtomicInteger disponible;
+        // Unidades de pedidos confirmados desde la activación
+        final AtomicInteger vendidos;
+        volatile int volcados;
+        volatile boolean cerrado = false;
+
+        Contador(ProductoFlash flash, int vendidosDesdeActivacion) {
+            this.productoId = flash.getProductoId();
+            this.stockInicial = flash.getStockInicial();
+            this.vendidosInicial = flash.getVendidosInicial();
+            this.disponible = new AtomicInteger(stockInicial - vendidosDesdeActivacion);
+            this.vendidos = new AtomicInteger(vendidosDesdeActivacion);
+            // Tras reiniciar, la base de datos puede ir atrasada: se fuerza un volcado
+            this.volcados = vendidosDesdeActivacion == 0 ? 0 : -1;
+        }
+
+        boolean tomar(int cantidad) {
+            while (true) {
+                int actual = disponible.get();
+                if (cerrado || actual < cantidad) {
+                    return false;
+                }
+                if (disponible.compareAndSet(actual, actual - cantidad)) {
+                    return true;
+                }
+            }
+        }
+
+        void devolver(int cantidad) {
+            disponible.addAndGet(cantidad);
+        }
+
+        Map<String, Object> estado() {
+            Map<String, Object> estado = new LinkedHashMap<>();
+            estado.put("productoId", productoId);
+            estado.put("stockInicial", stockInicial);
+            estado.put("disponible", disponible.get());
+            estado.put("vendidos", vendidos.get());
+            estado.put("pendientesDeVolcar", vendidos.get() - Math.max(volcados, 0));
+            return estado;
+        }
+    }
+}
@@ -1,20 +1,15 @@
 package mowi.store.sboot_api.service;
 
-import com.stripe.Stripe;
 import com.stripe.exception.StripeException;
 import com.stripe.model.PaymentIntent;
 import com.stripe.param.PaymentIntentCreateParams;
 import mowi.store.sboot_api.model.Transaccion;
-import mowi.store.sboot_api.model.Pedido;
 import mowi.store.sboot_api.repository.TransaccionRepository;
-import mowi.store.sboot_api.repository.PedidoRepository;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import java.time.LocalDateTime;
+import org.springframework.web.context.request.async.DeferredResult;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Optional;
 
 @Service
 public class PagoStripeService {
@@ -23,13 +18,16 @@ public class PagoStripeService {
     private TransaccionRepository transaccionRepository;
 
     @Autowired
-    private PedidoRepository pedidoRepository;
+    private TransaccionesPago transaccionesPago;
 
     @Autowired
-    private CarritoService carritoService;
+    private EventosStripe eventosStripe;
 
-    @Value("${stripe.api.key}")
-    private String stripeApiKey;
+    @Autowired
+    private PasarelaStripe pasarelaStripe;
+
+    @Autowired
+    private EstadoPagos estadoPagos;
 
     /**
      * Crear un Payment Intent en Stripe
@@ -40,9 +38,6 @@ public class PagoStripeService {
      */
     public PagoResponse crearPaymentIntent(Long pedidoId, Double monto) {
         try {
-            // Inicializar Stripe con la API key
-            Stripe.apiKey = stripeApiKey;
-
             // Convertir monto a centavos (Stripe usa centavos)
             Long montoEnCentavos = (long) (monto * 100);
 
@@ -54,13 +49,13 @@ public class PagoStripeService {
                     .putMetadata("pedidoId", pedidoId.toString())
                     .build();
 
-            PaymentIntent paymentIntent = PaymentIntent.create(params);
+            PaymentIntent paymentIntent = pasarelaStripe.crearPaymentIntent(params);
 
             System.out.println("✅ Payment Intent creado: " + paymentIntent.getId());
 
             // Guardar en BD
             Transaccion transaccion = new Transaccion(pedidoId, monto, paymentIntent.getId());
-            transaccionRepository.save(transaccion);
+            estadoPagos.actualizar(transaccionRepository.save(transaccion));
 
             // Retornar respuesta para el frontend
             PagoResponse response = new PagoResponse();
@@ -80,59 +75,42 @@ public class PagoStripeService {
 
     /**
      * Confirmar pago (después que el frontend lo procesó)
+     *
+     * El estado lo escriben los webhooks de Stripe (EventosStripe), así que aquí
+     * solo se lee la transacción local. Sin webhook configurado (desarrollo) se
+     * consulta el Payment Intent a Stripe mientras el pago no esté confirmado.
      */
     public Map<String, Object> confirmarPago(String paymentIntentId) {
-        try {
-            Stripe.apiKey = stripeApiKey;
-
-            // Obtener el Payment Intent de Stripe
-            PaymentIntent paymentIntent = PaymentIntent.retrieve(paymentIntentId);
-
-            Map<String, Object> respuesta = new HashMap<>();
-
-            // Verificar estado
-            if ("succeeded".equals(paymentIntent.getStatus())) {
-                // Pago exitoso
-                Optional<Transaccion> transOpt = transaccionRepository.findByStripePaymentIntentId(paymentIntentId);
-
-                if (transOpt.isPresent()) {
-                    Transaccion trans = transOpt.get();
-                    trans.setEstado("EXITOSO");
-                    trans.setFechaPago(LocalDateTime.now());
-                    transaccionRepository.save(trans);
-
-                    // Limpiar carrito del usuario asociado al pedido
-                    Pedido pedido = pedidoRepository.findById(trans.getPedidoId())
-                            .orElse(null);
-                    if (pedido != null) {
-                        try {
-                            carritoService.limpiarCarrito(pedido.getUsuarioId());
-                        } catch (Exception e) {
-                            // Ignorar errores al limpiar el carrito: no bloquear confirmación
-                        }
-                    }
-
-                    respuesta.put("estado", "EXITOSO");
-                    respuesta.put("mensaje", "✅ Pago procesado exitosamente");
-                    respuesta.put("pedidoId", trans.getPedidoId());
-                    respuesta.put("monto", trans.getMonto());
-                }
-
-            } else if ("processing".equals(paymentIntent.getStatus())) {
-                respuesta.put("estado", "PROCESANDO");
-                respuesta.put("mensaje", "⏳ Pago en proceso");
-
-            } else if ("requires_payment_method".equals(paymentIntent.getStatus())) {
-                respuesta.put("estado", "PENDIENTE");
-                respuesta.put("mensaje", "⏸️ Requiere método de pago");
-
-            } else {
-                respuesta.put("estado", "FALLIDO");
-                respuesta.put("mensaje", "❌ Pago fallido");
+        Transaccion trans = transaccionRepository.findByStripePaymentIntentId(paymentIntentId)
+                .orElseThrow(() -> new RuntimeException("Transacción no encontrada: " + paymentIntentId));
+
+        if (!eventosStripe.configurado() && !"EXITOSO".equals(trans.getEstado())) {
+            String estado = consultarEstadoEnStripe(paymentIntentId);
+            if (transaccionesPago.aplicarEstado(paymentIntentId, estado, null)) {
+                trans = transaccionRepository.findByStripePaymentIntentId(paymentIntentId).orElse(trans);
             }
+        }
 
-            return respuesta;
+        Map<String, Object> respuesta = new HashMap<>();
+        respuesta.put("estado", trans.getEstado());
+        respuesta.put("pedidoId", trans.getPedidoId());
+        respuesta.put("monto", trans.getMonto());
+        switch (trans.getEstado()) {
+            case "EXITOSO" -> respuesta.put("mensaje", "✅ Pago procesado exitosamente");
+            case "PROCESANDO" -> respuesta.put("mensaje", "⏳ Pago en proceso");
+            case "PENDIENTE" -> respuesta.put("mensaje", "⏸️ Esperando confirmación de Stripe");
+            default -> {
+                respuesta.put("mensaje", "❌ Pago fallido");
+                respuesta.put("detalleError", trans.getDetalleError());
+            }
+        }
+        return respuesta;
+    }
 
+    // Estado del Payment Intent en Stripe, traducido a los estados de Transaccion
+    private String consultarEstadoEnStripe(String paymentIntentId) {
+        try {
+            return PasarelaStripe.estadoTransaccion(pasarelaStripe.obtenerPaymentIntent(paymentIntentId));
         } catch (StripeException e) {
             System.out.println("❌ Error confirmando pago: " + e.getMessage());
             throw new RuntimeException("Error confirmando pago: " + e.getMessage());
@@ -140,25 +118,17 @@ public class PagoStripeService {
     }
 
     /**
-     * Obtener estado de un pago
+     * Obtener estado de un pago (desde memoria, sin consultar la base; ver EstadoPagos)
      */
     public Map<String, Object> obtenerEstadoPago(Long pedidoId) {
-        Optional<Transaccion> transOpt = transaccionRepository.findByPedidoId(pedidoId);
-
-        Map<String, Object> respuesta = new HashMap<>();
-
-        if (transOpt.isPresent()) {
-            Transaccion trans = transOpt.get();
-            respuesta.put("estado", trans.getEstado());
-            respuesta.put("monto", trans.getMonto());
-            respuesta.put("pedidoId", trans.getPedidoId());
-            respuesta.put("fechaPago", trans.getFechaPago());
-            respuesta.put("metodoPago", trans.getMetodoPago());
-        } else {
-            respuesta.put("error", "No hay pago registrado para este pedido");
-        }
+        return estadoPagos.obtener(pedidoId);
+    }
 
-        return respuesta;
+    /**
+     * Espera (long-polling) a que el estado del pago cambie respecto a estadoConocido
+     */
+    public DeferredResult<Map<String, Object>> esperarEstadoPago(Long pedidoId, String estadoConocido, Long plazoMs) {
+        return estadoPagos.esperar(pedidoId, estadoConocido, plazoMs);
     }
 
     /**
@@ -0,0 +1,307 @@
+package mowi.store.sboot_api.service;
+
+import com.stripe.Stripe;
+import com.stripe.StripeClient;
+import com.stripe.exception.ApiConnectionException;
+import com.stripe.exception.StripeException;
+import com.stripe.model.PaymentIntent;
+import com.stripe.model.StripeCollection;
+import com.stripe.net.HttpHeaders;
+import com.stripe.net.LiveStripeResponseGetter;
+import com.stripe.net.StripeRequest;
+import com.stripe.net.StripeResponse;
+import com.stripe.net.StripeResponseGetterOptions;
+import com.stripe.param.PaymentIntentCreateParams;
+import com.stripe.param.PaymentIntentListParams;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.PasswordAuthentication;
+import java.net.Proxy;
+import java.net.URISyntaxException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cliente de Stripe propio del servidor (sin tocar el Stripe.apiKey global del SDK).
+ *
+ * - StripeClient con su API key, su URL base (un mock local en pruebas) y un
+ *   presupuesto de reintentos de red.
+ * - Transporte HTTP propio (java.net.http) con sus conexiones y su hilo: no
+ *   comparte nada con el resto de llamadas salientes de la JVM.
+ * - Plazo de conexión y un plazo total por llamada que incluye los reintentos.
+ * - Bulkhead: como máximo N llamadas a Stripe a la vez; si no hay cupo en unos
+ *   milisegundos la petición falla enseguida en vez de dejar un hilo de Tomcat esperando.
+ * - Circuit breaker: tras varios fallos de red o 5xx seguidos deja de llamar un tiempo.
+ *   Los errores de negocio (tarjeta rechazada, parámetros) no cuentan como fallo.
+ */
+@Component
+public class PasarelaStripe {
+
+    private final StripeClient cliente;
+    private final Semaphore bulkhead;
+    private final long esperaCupoMs;
+    private final CircuitBreaker circuitBreaker;
+    private final AtomicInteger rechazadas = new AtomicInteger();
+
+    @Autowired
+    public PasarelaStripe(@Value("${stripe.api.key}") String apiKey,
+                          @Value("${stripe.api.base:https://api.stripe.com}") String apiBase,
+                          @Value("${stripe.timeout.conexion-ms:2000}") int timeoutConexionMs,
+                          @Value("${stripe.timeout.total-ms:10000}") int plazoMs,
+                          @Value("${stripe.reintentos:2}") int reintentos,
+                          @Value("${stripe.max-concurrentes:20}") int maxConcurrentes,
+                          @Value("${stripe.espera-cupo-ms:200}") long esperaCupoMs,
+                          @Value("${stripe.circuito.fallos:5}") int umbralFallos,
+                          @Value("${stripe.circuito.espera-ms:30000}") long esperaMs) {
+        Opciones opciones = new Opciones(apiKey, apiBase, timeoutConexionMs, plazoMs, reintentos);
+        this.cliente = new StripeClient(new LiveStripeResponseGetter(opciones,
+                new Transporte(timeoutConexionMs, plazoMs)));
+        this.bulkhead = new Semaphore(maxConcurrentes);
+        this.esperaCupoMs = esperaCupoMs;
+        this.circuitBreaker = new CircuitBreaker("stripe", umbralFallos, Duration.ofMillis(esperaMs));
+    }
+
+    public PaymentIntent crearPaymentIntent(PaymentIntentCreateParams params) throws StripeException {
+        return ejecutar(() -> cliente.paymentIntents().create(params));
+    }
+
+    public PaymentIntent obtenerPaymentIntent(String paymentIntentId) throws StripeException {
+        return ejecutar(() -> cliente.paymentIntents().retrieve(paymentIntentId));
+    }
+
+    /**
+     * Payment Intents creados entre desde y hasta (segundos epoch), de a 100.
+     * despuesDe es el último ID de la página anterior (null para la primera).
+     */
+    public StripeCollection<PaymentIntent> listarPaymentIntents(long desde, long hasta, String despuesDe)
+            throws StripeException {
+        PaymentIntentListParams params = PaymentIntentListParams.builder()
+                .setCreated(PaymentIntentListParams.Created.builder().setGte(desde).setLte(hasta).build())
+                .setLimit(100L)
+                .setStartingAfter(despuesDe)
+                .build();
+        return ejecutar(() -> cliente.paymentIntents().list(params));
+    }
+
+    // Estado de Transaccion equivalente al status del Payment Intent
+    public static String estadoTransaccion(PaymentIntent paymentIntent) {
+        return switch (paymentIntent.getStatus()) {
+            case "succeeded" -> "EXITOSO";
+            case "processing" -> "PROCESANDO";
+            case "canceled" -> "FALLIDO";
+            default -> "PENDIENTE";
+        };
+    }
+
+    public CircuitBreaker.Estado getEstadoCircuito() {
+        return circuitBreaker.getEstado();
+    }
+
+    public Map<String, Object> estado() {
+        Map<String, Object> estado = new LinkedHashMap<>();
+        estado.put("circuito", circuitBreaker.getEstado());
+        estado.put("cupoLibre", bulkhead.availablePermits());
+        estado.put("rechazadas", rechazadas.get());
+        return estado;
+    }
+
+    // Bulkhead + circuit breaker alrededor de una llamada (los reintentos los hace el SDK dentro)
+    private <T> T ejecutar(LlamadaStripe<T> llamada) throws StripeException {
+        try {
+            if (!bulkhead.tryAcquire(esperaCupoMs, TimeUnit.MILLISECONDS)) {
+                rechazadas.incrementAndGet();
+                throw new RuntimeException("Stripe saturado: demasiados pagos simultáneos, intenta de nuevo");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Llamada a Stripe interrumpida");
+        }
+        try {
+            if (!circuitBreaker.permitirLlamada()) {
+                rechazadas.incrementAndGet();
+                throw new RuntimeException("Stripe no disponible (circuito abierto)");
+            }
+            try {
+                T resultado = llamada.ejecutar();
+                circuitBreaker.registrarExito();
+                return resultado;
+            } catch (StripeException e) {
+                if (e instanceof ApiConnectionException || e.getStatusCode() == null || e.getStatusCode() >= 500) {
+                    circuitBreaker.registrarFallo();
+                } else {
+                    circuitBreaker.registrarExito();
+                }
+                throw e;
+            } catch (RuntimeException e) {
+                circuitBreaker.registrarFallo();
+                throw e;
+            }
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    @FunctionalInterface
+    private interface LlamadaStripe<T> {
+        T ejecutar() throws StripeException;
+    }
+
+    /**
+     * Transporte del SDK sobre java.net.http, con conexiones propias.
+     *
+     * El plazo (stripe.timeout.total-ms) es de la llamada completa, no de cada intento:
+     * los reintentos y sus esperas salen de lo que queda, y si lo que queda no alcanza
+     * para esperar y volver a intentar se devuelve el último resultado.
+     */
+    static class Transporte extends com.stripe.net.HttpClient {
+        private static final long ESPERA_INICIAL_MS = 500;
+        private static final long ESPERA_MAXIMA_MS = 5000;
+
+        private final HttpClient http;
+        private final Duration plazo;
+        // Fin del plazo de la llamada en curso en este hilo (System.nanoTime)
+        private final ThreadLocal<Long> limite = new ThreadLocal<>();
+
+        Transporte(int timeoutConexionMs, int plazoMs) {
+            ExecutorService hilos = Executors.newSingleThreadExecutor(r -> {
+                Thread hilo = new Thread(r, "stripe-http");
+                hilo.setDaemon(true);
+                return hilo;
+            });
+            this.http = HttpClient.newBuilder()
+                    .connectTimeout(Duration.ofMillis(timeoutConexionMs))
+                    .executor(hilos)
+                    .build();
+            this.plazo = Duration.ofMillis(plazoMs);
+        }
+
+        // Mismos criterios de reintento que el SDK, pero dentro de un único plazo total
+        @Override
+        public StripeResponse requestWithRetries(StripeRequest request) throws StripeException {
+            long fin = System.nanoTime() + plazo.toNanos();
+            Integer maxReintentos = request.options().getMaxNetworkRetries();
+            limite.set(fin);
+            try {
+                for (int reintento = 1; ; reintento++) {
+                    StripeResponse respuesta = null;
+                    ApiConnectionException error = null;
+                    try {
+                        respuesta = requestWithTelemetry(request);
+                    } catch (ApiConnectionException e) {
+                        error = e;
+                    }
+
+                    long esperaMs = esperaAntesDe(reintento);
+                    boolean quedaTiempo = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(esperaMs) < fin;
+                    if (maxReintentos == null || reintento > maxReintentos || !quedaTiempo
+                            || !reintentable(error, respuesta)) {
+                        if (error != null) {
+                            throw error;
+                        }
+                        return respuesta;
+                    }
+                    try {
+                        Thread.sleep(esperaMs);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new ApiConnectionException("Llamada a Stripe interrumpida", e);
+                    }
+                }
+            } finally {
+                limite.remove();
+            }
+        }
+
+        private static boolean reintentable(ApiConnectionException error, StripeResponse respuesta) {
+            if (error != null) {
+                return error.getCause() instanceof ConnectException || error.getCause() instanceof HttpTimeoutException;
+            }
+            String deberiaReintentar = respuesta.headers().firstValue("Stripe-Should-Retry").orElse(null);
+            if (deberiaReintentar != null) {
+                return deberiaReintentar.equals("true");
+            }
+            return respuesta.code() == 409 || respuesta.code() >= 500;
+        }
+
+        // Backoff exponencial con jitter, como el del SDK
+        private static long esperaAntesDe(int reintento) {
+            long espera = Math.min(ESPERA_INICIAL_MS << Math.min(reintento - 1, 10), ESPERA_MAXIMA_MS);
+            return Math.max(ESPERA_INICIAL_MS, (long) (espera * (0.75 + ThreadLocalRandom.current().nextDouble() * 0.25)));
+        }
+
+        @Override
+        public StripeResponse request(StripeRequest request) throws StripeException {
+            Long fin = limite.get();
+            Duration plazoIntento = fin != null ? Duration.ofNanos(fin - System.nanoTime()) : plazo;
+            if (plazoIntento.toMillis() <= 0) {
+                throw new ApiConnectionException("Plazo de " + plazo.toMillis() + " ms agotado llamando a Stripe");
+            }
+            try {
+                HttpRequest.Builder builder = HttpRequest.newBuilder(request.url().toURI()).timeout(plazoIntento);
+                request.headers().map().forEach((nombre, valores) -> valores.forEach(v -> builder.header(nombre, v)));
+                builder.header("User-Agent", buildUserAgentString());
+                builder.header("X-Stripe-Client-User-Agent", buildXStripeClientUserAgentString());
+
+                HttpRequest.BodyPublisher cuerpo = HttpRequest.BodyPublishers.noBody();
+                if (request.content() != null) {
+                    cuerpo = HttpRequest.BodyPublishers.ofByteArray(request.content().byteArrayContent());
+                    if (request.headers().firstValue("Content-Type").isEmpty()) {
+                        builder.header("Content-Type", request.content().contentType());
+                    }
+                }
+                builder.method(request.method().name(), cuerpo);
+
+                HttpResponse<String> response = http.send(builder.build(), HttpResponse.BodyHandlers.ofString());
+                return new StripeResponse(response.statusCode(), HttpHeaders.of(response.headers().map()), response.body());
+            } catch (IOException | URISyntaxException e) {
+                throw new ApiConnectionException("Error de red con Stripe: " + e.getMessage(), e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ApiConnectionException("Llamada a Stripe interrumpida", e);
+            }
+        }
+    }
+
+    // Configuración del StripeClient (la que el SDK leería de las variables globales de Stripe)
+    private static class Opciones extends StripeResponseGetterOptions {
+        private final String apiKey;
+        private final String apiBase;
+        private final int timeoutConexionMs;
+        private final int plazoMs;
+        private final int reintentos;
+
+        Opciones(String apiKey, String apiBase, int timeoutConexionMs, int plazoMs, int reintentos) {
+            this.apiKey = apiKey;
+            this.apiBase = apiBase;
+            this.timeoutConexionMs = timeoutConexionMs;
+            this.plazoMs = plazoMs;
+            this.reintentos = reintentos;
+        }
+
+        @Override public String getApiKey() { return apiKey; }
+        @Override public String getClientId() { return null; }
+        @Override public int getConnectTimeout() { return timeoutConexionMs; }
+        @Override public Proxy getConnectionProxy() { return null; }
+        @Override public int getMaxNetworkRetries() { return reintentos; }
+        @Override public PasswordAuthentication getProxyCredential() { return null; }
+        @Override public String getApiBase() { return apiBase; }
+        @Override public String getFilesBase() { return Stripe.UPLOAD_API_BASE; }
+        @Override public String getConnectBase() { return Stripe.CONNECT_API_BASE; }
+        @Override public int getReadTimeout() { return plazoMs; }
+    }
+}
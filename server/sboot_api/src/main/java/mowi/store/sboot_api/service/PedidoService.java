@@ -1,25 +1,31 @@
 package mowi.store.sboot_api.service;
 
-import mowi.store.sboot_api.model.Carrito;
 import mowi.store.sboot_api.model.DetallePedido;
 import mowi.store.sboot_api.model.ItemCarrito;
 import mowi.store.sboot_api.model.Pedido;
-import mowi.store.sboot_api.model.Producto;
 import mowi.store.sboot_api.repository.DetallePedidoRepository;
-import mowi.store.sboot_api.repository.ItemCarritoRepository; // <--- IMPORTANTE
+import mowi.store.sboot_api.repository.PedidoJdbcRepository;
 import mowi.store.sboot_api.repository.PedidoRepository;
-import mowi.store.sboot_api.repository.ProductoRepository; // <--- IMPORTANTE (Stock)
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional; // <--- IMPORTANTE
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
 
 @Service
 public class PedidoService {
 
+    public static final int LIMITE_POR_DEFECTO = 20;
+    public static final int LIMITE_MAXIMO = 100;
+
     @Autowired
     private PedidoRepository pedidoRepository;
 
@@ -30,20 +36,18 @@ public class PedidoService {
     private CarritoService carritoService;
 
     @Autowired
-    private ItemCarritoRepository itemCarritoRepository; // <--- INYECCIÓN NECESARIA
+    private PedidoJdbcRepository pedidoJdbcRepository; // <--- Detalles y stock en lote
 
     @Autowired
-    private ProductoRepository productoRepository; // <--- Para actualizar stock
+    private InventarioFlash inventarioFlash; // <--- Reservas en memoria (venta flash)
 
     // Crear pedido desde carrito (versión segura sin cupones)
     @Transactional // <--- Asegura que todo ocurra en una transacción
     public Pedido crearPedidoDesdeCarrito(Long usuarioId, String metodoPago) {
-        Carrito carrito = carritoService.obtenerCarrito(usuarioId);
-
         // --- SOLUCIÓN AL ERROR "CARRITO VACÍO" ---
-        // Buscamos los ítems directamente en la base de datos usando el ID del carrito
-        // Esto ignora cualquier problema de caché o lazy loading del objeto Carrito
-        List<ItemCarrito> items = itemCarritoRepository.findByCarrito_Id(carrito.getId());
+        // Los ítems se piden al CarritoService (base de datos o almacén en memoria),
+        // que devuelve una foto consistente del carrito con sus productos
+        List<ItemCarrito> items = carritoService.itemsParaCheckout(usuarioId);
 
         if (items == null || items.isEmpty()) {
             throw new RuntimeException("El carrito está vacío");
@@ -54,50 +58,118 @@ public class PedidoService {
                 .map(ItemCarrito::getSubtotal)
                 .reduce(BigDecimal.ZERO, BigDecimal::add);
 
+        // Cantidad por producto, ordenada por ID (orden fijo de bloqueo de filas)
+        SortedMap<Long, Integer> cantidadPorProducto = new TreeMap<>();
+        for (ItemCarrito item : items) {
+            cantidadPorProducto.merge(item.getProducto().getId(), item.getCantidad(), Integer::sum);
+        }
+
+        // Falla rápido, sin bloquear filas, si el stock leído ya no alcanza
+        // (en venta flash el stock de la base puede ir atrasado: manda el contador en memoria)
+        for (ItemCarrito item : items) {
+            Long productoId = item.getProducto().getId();
+            if (!inventarioFlash.esFlash(productoId)
+                    && item.getProducto().getStock() < cantidadPorProducto.get(productoId)) {
+                throw new RuntimeException("Stock insuficiente para " + item.getProducto().getNombre());
+            }
+        }
+
+        // Productos en venta flash: reserva en memoria, sin tocar su fila.
+        // En la base se descuenta exactamente lo que el contador no manejó.
+        InventarioFlash.Reserva reserva = inventarioFlash.reservar(cantidadPorProducto);
+        lanzarSiFaltaStock(items, reserva.sinStock);
+        SortedMap<Long, Integer> cantidadEnBase = new TreeMap<>(cantidadPorProducto);
+        cantidadEnBase.keySet().removeAll(reserva.enMemoria);
+
         // Crear pedido
         Pedido pedido = new Pedido(usuarioId, total, metodoPago);
         pedido.setEstado("PENDIENTE");
         pedido.setFechaPedido(LocalDateTime.now());
         Pedido pedidoGuardado = pedidoRepository.save(pedido);
 
-        // Procesar ítems: Crear detalles y actualizar stock
-        for (ItemCarrito item : items) {
-            // 1. Crear Detalle
-            DetallePedido detalle = new DetallePedido(
-                    pedidoGuardado,
-                    item.getProducto(),
-                    item.getCantidad(),
-                    item.getProducto().getPrecio()
-            );
-            detallePedidoRepository.save(detalle);
-
-            // 2. Actualizar Stock (Lógica básica importante)
-            Producto producto = item.getProducto();
-            if (producto.getStock() >= item.getCantidad()) {
-                producto.setStock(producto.getStock() - item.getCantidad());
-                producto.setVendidos(producto.getVendidos() + item.getCantidad());
-                productoRepository.save(producto);
-            }
+        // Procesar ítems en lote: número de consultas constante sin importar las líneas
+        // 1. Crear Detalles (un lote de INSERT)
+        pedidoJdbcRepository.insertarDetalles(pedidoGuardado.getId(), items);
+
+        // 2. Reservar Stock (un lote de UPDATE condicionales). Va al final para que las
+        //    filas de productos muy vendidos queden bloqueadas el menor tiempo posible.
+        //    Si algún producto no alcanza, la excepción deshace el pedido completo.
+        if (!cantidadEnBase.isEmpty()) {
+            lanzarSiFaltaStock(items, pedidoJdbcRepository.descontarStock(cantidadEnBase));
         }
 
+        // No se invalida el catálogo por cada compra: el UPDATE de stock mueve fecha_actualizacion
+        // y CatalogoCache.verificarCambios() junta todas las compras de su intervalo en una reconstrucción
+
         // Limpiar carrito
         carritoService.limpiarCarrito(usuarioId);
 
         return pedidoGuardado;
     }
 
+    private void lanzarSiFaltaStock(List<ItemCarrito> items, List<Long> sinStock) {
+        if (!sinStock.isEmpty()) {
+            String nombres = items.stream()
+                    .filter(i -> sinStock.contains(i.getProducto().getId()))
+                    .map(i -> i.getProducto().getNombre())
+                    .collect(Collectors.joining(", "));
+            throw new RuntimeException("Stock insuficiente para " + nombres);
+        }
+    }
+
     // ... (El resto de tus métodos getter/setter siguen igual)
     
     public Optional<Pedido> obtenerPedido(Long id) {
         return pedidoRepository.findById(id);
     }
 
-    public List<Pedido> listarPedidosUsuario(Long usuarioId) {
-        return pedidoRepository.findByUsuarioId(usuarioId);
+    /**
+     * Historial de pedidos del usuario, del más reciente al más antiguo, por páginas.
+     * El cursor es "fechaPedido_id" del último pedido de la página anterior.
+     */
+    public PaginaPedidos listarPedidosUsuario(Long usuarioId, String cursor, Integer limite) {
+        int tamano = limite == null || limite <= 0 ? LIMITE_POR_DEFECTO : Math.min(limite, LIMITE_MAXIMO);
+        // Se pide uno de más para saber si hay otra página
+        PageRequest pagina = PageRequest.of(0, tamano + 1);
+
+        List<PedidoRepository.ResumenPedido> resumenes;
+        if (cursor == null || cursor.isEmpty()) {
+            resumenes = pedidoRepository.findResumenes(usuarioId, pagina);
+        } else {
+            int separador = cursor.lastIndexOf('_');
+            try {
+                LocalDateTime fecha = LocalDateTime.parse(cursor.substring(0, separador));
+                Long id = Long.parseLong(cursor.substring(separador + 1));
+                resumenes = pedidoRepository.findResumenesDespuesDe(usuarioId, fecha, id, pagina);
+            } catch (RuntimeException e) {
+                throw new RuntimeException("Cursor inválido: " + cursor);
+            }
+        }
+
+        String siguienteCursor = null;
+        if (resumenes.size() > tamano) {
+            resumenes = resumenes.subList(0, tamano);
+            PedidoRepository.ResumenPedido ultimo = resumenes.get(tamano - 1);
+            siguienteCursor = ultimo.getFechaPedido() + "_" + ultimo.getId();
+        }
+        return new PaginaPedidos(resumenes, siguienteCursor, tamano);
     }
 
     public List<DetallePedido> obtenerDetallesPedido(Long pedidoId) {
-        return detallePedidoRepository.findByPedidoId(pedidoId);
+        return detallePedidoRepository.findByPedidoIdConProducto(pedidoId);
+    }
+
+    // Pedido con sus detalles: una consulta (dos solo si el pedido no tiene líneas)
+    public Map<String, Object> obtenerPedidoConDetalles(Long pedidoId) {
+        List<DetallePedido> detalles = obtenerDetallesPedido(pedidoId);
+        Pedido pedido = !detalles.isEmpty()
+                ? detalles.get(0).getPedido()
+                : pedidoRepository.findById(pedidoId).orElseThrow(() -> new RuntimeException("Pedido no encontrado"));
+
+        Map<String, Object> respuesta = new HashMap<>();
+        respuesta.put("pedido", pedido);
+        respuesta.put("detalles", detalles);
+        return respuesta;
     }
 
     public Pedido actualizarEstado(Long pedidoId, String nuevoEstado) {
@@ -109,4 +181,19 @@ public class PedidoService {
 
         return pedidoRepository.save(pedido);
     }
-}
\ No newline at end of file
+
+    /**
+     * Página del historial + cursor para pedir la siguiente (null si no hay más)
+     */
+    public static class PaginaPedidos {
+        public List<PedidoRepository.ResumenPedido> pedidos;
+        public String siguienteCursor;
+        public int limite;
+
+        public PaginaPedidos(List<PedidoRepository.ResumenPedido> pedidos, String siguienteCursor, int limite) {
+            this.pedidos = pedidos;
+            this.siguienteCursor = siguienteCursor;
+            this.limite = limite;
+        }
+    }
+}
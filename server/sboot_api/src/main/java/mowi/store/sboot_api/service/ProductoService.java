@@ -3,43 +3,194 @@ package mowi.store.sboot_api.service;
 import mowi.store.sboot_api.model.Producto;
 import mowi.store.sboot_api.repository.ProductoRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
 public class ProductoService {
 
+    // Tamaño de página por defecto y máximo permitido en los listados
+    public static final int LIMITE_POR_DEFECTO = 50;
+    public static final int LIMITE_MAXIMO = 100;
+
     @Autowired
     private ProductoRepository productoRepository;
 
-    // Listar todos los productos activos
-    public List<Producto> listarProductos() {
-        return productoRepository.findProductosActivos();
+    @Autowired
+    private CatalogoCache catalogoCache;
+
+    @Autowired
+    private IndiceBusqueda indiceBusqueda;
+
+    @Autowired
+    private Autocompletado autocompletado;
+
+    // Mejor puntuación primero; a igual puntuación, el orden del catálogo (vendidos DESC, id)
+    private static final Comparator<Resultado> POR_RELEVANCIA =
+            Comparator.comparingInt((Resultado r) -> r.puntos).reversed()
+                    .thenComparing(r -> r.producto, CatalogoCache.Snapshot.POR_VENDIDOS);
+
+    // Listar productos activos (desde el catálogo en memoria), paginado por (vendidos, id)
+    public PaginaProductos listarProductos(String cursor, Integer limite) {
+        return paginarPorVendidos(catalogoCache.actual().getActivos(), cursor, limite);
     }
 
     // Obtener producto por ID
     public Optional<Producto> obtenerProducto(Long id) {
-        return productoRepository.findById(id);
+        Optional<Producto> producto = catalogoCache.actual().porId(id);
+        return producto.isPresent() ? producto : productoRepository.findById(id);
     }
 
-    // Buscar productos por nombre
-    public List<Producto> buscarPorNombre(String nombre) {
-        return productoRepository.buscarPorNombre(nombre);
+    // Buscar productos por nombre (índice en memoria), ordenados por relevancia
+    public PaginaProductos buscarPorNombre(String nombre, String cursor, Integer limite) {
+        return buscarEnIndice(nombre, IndiceBusqueda.CAMPO_NOMBRE, cursor, limite);
     }
 
-    // Listar productos por categoría
-    public List<Producto> productosPorCategoria(Long categoriaId) {
-        return productoRepository.findByCategoria(categoriaId);
+    // Listar productos por categoría, paginado por (vendidos, id)
+    public PaginaProductos productosPorCategoria(Long categoriaId, String cursor, Integer limite) {
+        return paginarPorVendidos(catalogoCache.actual().getActivosPorCategoria(categoriaId), cursor, limite);
     }
 
-    // Búsqueda general (por nombre o categoría)
-    public List<Producto> buscar(String busqueda) {
-        return productoRepository.buscar(busqueda);
+    // Búsqueda general (nombre, categoría o descripción), ordenada por relevancia
+    public PaginaProductos buscar(String busqueda, String cursor, Integer limite) {
+        return buscarEnIndice(busqueda, IndiceBusqueda.TODOS_LOS_CAMPOS, cursor, limite);
     }
 
     // Obtener productos más vendidos
-    public List<Producto> productosTop() {
-        return productoRepository.findProductosActivos();
+    public PaginaProductos productosTop(String cursor, Integer limite) {
+        return paginarPorVendidos(catalogoCache.actual().getActivos(), cursor, limite);
+    }
+
+    // Sugerencias de autocompletado (productos y categorías) para un prefijo
+    public List<Autocompletado.Sugerencia> autocompletar(String prefijo, Integer limite) {
+        catalogoCache.actual(); // asegura que el trie esté cargado en el arranque en frío
+        int tamano = (limite == null || limite <= 0) ? 8 : Math.min(limite, Autocompletado.MAX_SUGERENCIAS);
+        return autocompletado.sugerir(prefijo, tamano);
+    }
+
+    // Avisar que hubo cambios en productos para reconstruir el catálogo en segundo plano
+    public void notificarCambioProductos() {
+        catalogoCache.invalidar();
+    }
+
+    // Cada snapshot nuevo se refleja en el índice de búsqueda (solo lo que cambió) y en el autocompletado
+    @EventListener
+    public void alActualizarCatalogo(CatalogoCache.CatalogoActualizado evento) {
+        indiceBusqueda.sincronizar(evento.getSnapshot().getTodos());
+        autocompletado.reconstruir(evento.getSnapshot().getTodos());
+    }
+
+    // ==================== BÚSQUEDA ====================
+
+    private PaginaProductos buscarEnIndice(String consulta, int campos, String cursor, Integer limite) {
+        int tamano = normalizarLimite(limite);
+        CatalogoCache.Snapshot catalogo = catalogoCache.actual();
+
+        List<Resultado> resultados = new ArrayList<>();
+        for (Map.Entry<Long, Integer> e : indiceBusqueda.buscar(consulta, campos).entrySet()) {
+            catalogo.porId(e.getKey())
+                    .filter(p -> Boolean.TRUE.equals(p.getActivo()))
+                    .ifPresent(p -> resultados.add(new Resultado(p, e.getValue())));
+        }
+        resultados.sort(POR_RELEVANCIA);
+
+        // Cursor con formato "puntos_vendidos_id" (del último resultado de la página anterior)
+        int desde = 0;
+        if (cursor != null && !cursor.isEmpty()) {
+            String[] partes = cursor.split("_");
+            try {
+                Producto clave = new Producto();
+                clave.setVendidos(Integer.parseInt(partes[1]));
+                clave.setId(Long.parseLong(partes[2]));
+                int pos = Collections.binarySearch(
+                        resultados, new Resultado(clave, Integer.parseInt(partes[0])), POR_RELEVANCIA);
+                desde = pos >= 0 ? pos + 1 : -pos - 1;
+            } catch (RuntimeException e) {
+                throw new RuntimeException("Cursor inválido: " + cursor);
+            }
+        }
+
+        int hasta = Math.min(resultados.size(), desde + tamano);
+        List<Producto> productos = new ArrayList<>(Math.max(0, hasta - desde));
+        for (int i = desde; i < hasta; i++) {
+            productos.add(resultados.get(i).producto);
+        }
+
+        String siguiente = null;
+        if (hasta < resultados.size()) {
+            Resultado ultimo = resultados.get(hasta - 1);
+            siguiente = ultimo.puntos + "_" + CatalogoCache.Snapshot.vendidosDe(ultimo.producto)
+                    + "_" + ultimo.producto.getId();
+        }
+        return new PaginaProductos(productos, siguiente, tamano);
+    }
+
+    // ==================== PAGINACIÓN ====================
+
+    private PaginaProductos paginarPorVendidos(List<Producto> ordenados, String cursor, Integer limite) {
+        int tamano = normalizarLimite(limite);
+        Integer despuesDeVendidos = null;
+        Long despuesDeId = null;
+
+        // Cursor con formato "vendidos_id" (del último producto de la página anterior)
+        if (cursor != null && !cursor.isEmpty()) {
+            int separador = cursor.indexOf('_');
+            try {
+                despuesDeVendidos = Integer.parseInt(cursor.substring(0, separador));
+                despuesDeId = Long.parseLong(cursor.substring(separador + 1));
+            } catch (RuntimeException e) {
+                throw new RuntimeException("Cursor inválido: " + cursor);
+            }
+        }
+
+        // Se pide uno de más para saber si hay otra página
+        List<Producto> productos = CatalogoCache.Snapshot.paginaDespuesDe(
+                ordenados, despuesDeVendidos, despuesDeId, tamano + 1);
+
+        String siguiente = null;
+        if (productos.size() > tamano) {
+            productos = productos.subList(0, tamano);
+            Producto ultimo = productos.get(tamano - 1);
+            siguiente = CatalogoCache.Snapshot.vendidosDe(ultimo) + "_" + ultimo.getId();
+        }
+        return new PaginaProductos(productos, siguiente, tamano);
+    }
+
+    private int normalizarLimite(Integer limite) {
+        if (limite == null || limite <= 0) {
+            return LIMITE_POR_DEFECTO;
+        }
+        return Math.min(limite, LIMITE_MAXIMO);
+    }
+
+    private static class Resultado {
+        final Producto producto;
+        final int puntos;
+
+        Resultado(Producto producto, int puntos) {
+            this.producto = producto;
+            this.puntos = puntos;
+        }
+    }
+
+    /**
+     * Página de productos + cursor para pedir la siguiente (null si no hay más)
+     */
+    public static class PaginaProductos {
+        public List<Producto> productos;
+        public String siguienteCursor;
+        public int limite;
+
+        public PaginaProductos(List<Producto> productos, String siguienteCursor, int limite) {
+            this.productos = productos;
+            this.siguienteCursor = siguienteCursor;
+            this.limite = limite;
+        }
     }
-}
\ No newline at end of file
+}
@@ -3,7 +3,10 @@ package mowi.store.sboot_api.service;
 import mowi.store.sboot_api.model.Resena;
 import mowi.store.sboot_api.repository.ResenaRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -13,18 +16,80 @@ public class ResenaService {
     @Autowired
     private ResenaRepository resenaRepository;
 
-    // Obtener reseñas de un producto
-    public List<Resena> obtenerResenas(Long productoId) {
-        return resenaRepository.findByProductoId(productoId);
+    @Autowired
+    private CalificacionesProductos calificacionesProductos;
+
+    public static final int LIMITE_POR_DEFECTO = 20;
+    public static final int LIMITE_MAXIMO = 100;
+
+    // Posición "antes de la primera fila" para pedir la primera página
+    private static final LocalDateTime FECHA_INICIAL = LocalDateTime.of(9999, 12, 31, 23, 59, 59);
+
+    /**
+     * Reseñas de un producto por páginas: orden "recientes" (por defecto), "mejores" o "peores".
+     * El cursor es "calificacion_fechaCreacion_id" de la última reseña de la página anterior.
+     */
+    public PaginaResenas listarResenas(Long productoId, String orden, String cursor, Integer limite) {
+        String criterio = orden == null || orden.isEmpty() ? "recientes" : orden;
+        if (!criterio.equals("recientes") && !criterio.equals("mejores") && !criterio.equals("peores")) {
+            throw new RuntimeException("Orden inválido: " + orden + " (recientes, mejores o peores)");
+        }
+        int tamano = limite == null || limite <= 0 ? LIMITE_POR_DEFECTO : Math.min(limite, LIMITE_MAXIMO);
+        // Se pide uno de más para saber si hay otra página
+        PageRequest pagina = PageRequest.of(0, tamano + 1);
+
+        int calificacion = criterio.equals("mejores") ? 6 : 0;
+        LocalDateTime fecha = FECHA_INICIAL;
+        long id = Long.MAX_VALUE;
+        if (cursor != null && !cursor.isEmpty()) {
+            try {
+                String[] partes = cursor.split("_");
+                calificacion = Integer.parseInt(partes[0]);
+                fecha = LocalDateTime.parse(partes[1]);
+                id = Long.parseLong(partes[2]);
+            } catch (RuntimeException e) {
+                throw new RuntimeException("Cursor inválido: " + cursor);
+            }
+        }
+
+        List<ResenaRepository.ResenaVista> resenas = switch (criterio) {
+            case "mejores" -> resenaRepository.findMejores(productoId, calificacion, fecha, id, pagina);
+            case "peores" -> resenaRepository.findPeores(productoId, calificacion, fecha, id, pagina);
+            default -> resenaRepository.findRecientes(productoId, fecha, id, pagina);
+        };
+
+        String siguienteCursor = null;
+        if (resenas.size() > tamano) {
+            resenas = resenas.subList(0, tamano);
+            ResenaRepository.ResenaVista ultima = resenas.get(tamano - 1);
+            siguienteCursor = ultima.getCalificacion() + "_" + ultima.getFechaCreacion() + "_" + ultima.getId();
+        }
+        return new PaginaResenas(resenas, siguienteCursor, tamano);
     }
 
     // Crear reseña
+    @Transactional
     public Resena crearResena(Resena resena) {
-        if (resena.getCalificacion() < 1 || resena.getCalificacion() > 5) {
+        if (resena.getCalificacion() == null || resena.getCalificacion() < 1 || resena.getCalificacion() > 5) {
             throw new RuntimeException("La calificación debe estar entre 1 y 5");
         }
+        if (resena.getProducto() == null || resena.getProducto().getId() == null) {
+            throw new RuntimeException("La reseña necesita un producto");
+        }
+
+        Resena guardada = resenaRepository.save(resena);
+        calificacionesProductos.registrar(resena.getProducto().getId(), resena.getCalificacion());
+        return guardada;
+    }
+
+    // Promedio, total e histograma de un producto (O(1), desde memoria)
+    public CalificacionesProductos.ResumenCalificaciones obtenerCalificaciones(Long productoId) {
+        return calificacionesProductos.obtener(productoId);
+    }
 
-        return resenaRepository.save(resena);
+    // Lo mismo para varios productos a la vez
+    public List<CalificacionesProductos.ResumenCalificaciones> obtenerCalificaciones(List<Long> productoIds) {
+        return calificacionesProductos.obtenerVarios(productoIds);
     }
 
     // Obtener reseña por ID
@@ -33,7 +98,26 @@ public class ResenaService {
     }
 
     // Eliminar reseña
+    @Transactional
     public void eliminarResena(Long id) {
-        resenaRepository.deleteById(id);
+        resenaRepository.findById(id).ifPresent(resena -> {
+            resenaRepository.delete(resena);
+            calificacionesProductos.quitar(resena.getProducto().getId(), resena.getCalificacion());
+        });
+    }
+
+    /**
+     * Página de reseñas + cursor para pedir la siguiente (null si no hay más)
+     */
+    public static class PaginaResenas {
+        public List<ResenaRepository.ResenaVista> resenas;
+        public String siguienteCursor;
+        public int limite;
+
+        public PaginaResenas(List<ResenaRepository.ResenaVista> resenas, String siguienteCursor, int limite) {
+            this.resenas = resenas;
+            this.siguienteCursor = siguienteCursor;
+            this.limite = limite;
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,191 @@
+package mowi.store.sboot_api.service;
+
+import mowi.store.sboot_api.model.Producto;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.text.Normalizer;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Etapa de recuperación local previa a Gemini.
+ *
+ * En vez de mandar todo el catálogo en el prompt, se eligen los N productos más
+ * prometedores para la consulta:
+ * 1. Se extrae un rango de precio si la consulta lo menciona ("bajo 500", "entre 100 y 300").
+ * 2. Se puntúan los productos por coincidencia léxica en nombre, categoría y descripción.
+ * 3. Si ninguna palabra coincide, se usan los más vendidos dentro del rango de precio.
+ */
+@Component
+public class SeleccionCandidatos {
+
+    @Autowired
+    private CatalogoCache catalogoCache;
+
+    @Autowired
+    private IndiceBusqueda indiceBusqueda;
+
+    @Value("${gemini.candidatos.max:40}")
+    private int maxCandidatos;
+
+    // Admite separadores de miles y decimales con punto o coma ("1,500", "1.500", "1.299,90")
+    private static final String NUMERO = "\\$?\\s*(\\d+(?:[.,]\\d+)*)";
+
+    private static final Pattern ENTRE = Pattern.compile(
+            "entre\\s+" + NUMERO + "\\s+(?:y|a)\\s+" + NUMERO);
+    private static final Pattern MAXIMO = Pattern.compile(
+            "(?:bajo|menos de|menor a|menor de|hasta|maximo|max|por debajo de|no mas de)\\s+(?:de\\s+)?" + NUMERO);
+    private static final Pattern MINIMO = Pattern.compile(
+            "(?:(?<!no )mas de|mayor a|mayor de|desde|minimo|sobre|por encima de)\\s+" + NUMERO);
+
+    // Palabras que no aportan a la coincidencia léxica
+    private static final Set<String> PALABRAS_VACIAS = Set.of(
+            "a", "al", "algo", "con", "de", "del", "el", "en", "entre", "es", "la", "las", "lo", "los",
+            "me", "mi", "o", "para", "por", "que", "quiero", "busco", "se", "sin", "un", "una", "unos",
+            "unas", "y", "bajo", "menos", "mas", "hasta", "desde", "maximo", "minimo", "sobre",
+            "dolares", "dolar", "soles", "precio", "menor", "mayor", "debajo", "encima", "no"
+    );
+
+    /**
+     * Candidatos para la consulta, ordenados de más a menos relevante (como máximo maxCandidatos).
+     */
+    public Seleccion seleccionar(String consulta) {
+        CatalogoCache.Snapshot catalogo = catalogoCache.actual();
+        String texto = plegar(consulta);
+        BigDecimal[] rango = extraerRangoPrecio(texto);
+        BigDecimal minimo = rango[0];
+        BigDecimal maximo = rango[1];
+
+        List<String> terminos = new ArrayList<>();
+        for (String token : IndiceBusqueda.tokenizar(texto)) {
+            if (token.length() > 1 && !PALABRAS_VACIAS.contains(token) && !esNumero(token)) {
+                terminos.add(token);
+            }
+        }
+
+        Map<Long, Integer> puntuaciones = terminos.isEmpty()
+                ? Map.of()
+                : indiceBusqueda.buscarCualquiera(terminos, IndiceBusqueda.TODOS_LOS_CAMPOS);
+
+        List<Producto> candidatos = new ArrayList<>();
+        if (!puntuaciones.isEmpty()) {
+            for (Map.Entry<Long, Integer> e : puntuaciones.entrySet()) {
+                catalogo.porId(e.getKey())
+                        .filter(p -> Boolean.TRUE.equals(p.getActivo()) && enRango(p, minimo, maximo))
+                        .ifPresent(candidatos::add);
+            }
+            candidatos.sort(Comparator
+                    .comparing((Producto p) -> puntuaciones.get(p.getId()), Comparator.reverseOrder())
+                    .thenComparing(CatalogoCache.Snapshot.POR_VENDIDOS));
+        }
+
+        // Sin coincidencias léxicas: los más vendidos que respeten el rango de precio
+        if (candidatos.isEmpty()) {
+            for (Producto p : catalogo.getActivos()) {
+                if (candidatos.size() >= maxCandidatos) {
+                    break;
+                }
+                if (enRango(p, minimo, maximo)) {
+                    candidatos.add(p);
+                }
+            }
+        }
+
+        if (candidatos.size() > maxCandidatos) {
+            candidatos = new ArrayList<>(candidatos.subList(0, maxCandidatos));
+        }
+        return new Seleccion(candidatos, minimo, maximo);
+    }
+
+    /**
+     * Rango [mínimo, máximo] mencionado en la consulta (cualquiera puede ser null).
+     */
+    static BigDecimal[] extraerRangoPrecio(String textoPlegado) {
+        BigDecimal minimo = null;
+        BigDecimal maximo = null;
+
+        Matcher entre = ENTRE.matcher(textoPlegado);
+        if (entre.find()) {
+            BigDecimal a = numero(entre.group(1));
+            BigDecimal b = numero(entre.group(2));
+            return a.compareTo(b) <= 0 ? new BigDecimal[]{a, b} : new BigDecimal[]{b, a};
+        }
+
+        Matcher max = MAXIMO.matcher(textoPlegado);
+        if (max.find()) {
+            maximo = numero(max.group(1));
+        }
+        Matcher min = MINIMO.matcher(textoPlegado);
+        if (min.find()) {
+            minimo = numero(min.group(1));
+        }
+        return new BigDecimal[]{minimo, maximo};
+    }
+
+    private static boolean enRango(Producto p, BigDecimal minimo, BigDecimal maximo) {
+        BigDecimal precio = p.getPrecio();
+        if (precio == null) {
+            return minimo == null && maximo == null;
+        }
+        return (minimo == null || precio.compareTo(minimo) >= 0)
+                && (maximo == null || precio.compareTo(maximo) <= 0);
+    }
+
+    /*
+     * El último separador es decimal salvo que lo sigan exactamente tres dígitos
+     * ("1,500" y "1.500" son mil quinientos; "12,5" y "499.99" llevan decimales).
+     * Los separadores anteriores siempre son de miles.
+     */
+    static BigDecimal numero(String texto) {
+        int ultimo = Math.max(texto.lastIndexOf('.'), texto.lastIndexOf(','));
+        if (ultimo < 0) {
+            return new BigDecimal(texto);
+        }
+        String entero = texto.substring(0, ultimo).replace(".", "").replace(",", "");
+        String resto = texto.substring(ultimo + 1);
+        return resto.length() == 3
+                ? new BigDecimal(entero + resto)
+                : new BigDecimal(entero + "." + resto);
+    }
+
+    private static boolean esNumero(String token) {
+        for (int i = 0; i < token.length(); i++) {
+            if (!Character.isDigit(token.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Minúsculas y sin tildes, conservando la puntuación (necesaria para los precios)
+    private static String plegar(String texto) {
+        if (texto == null) {
+            return "";
+        }
+        String descompuesto = Normalizer.normalize(texto, Normalizer.Form.NFD);
+        StringBuilder sb = new StringBuilder(descompuesto.length());
+        for (int i = 0; i < descompuesto.length(); i++) {
+            char c = descompuesto.charAt(i);
+            if (Character.getType(c) != Character.NON_SPACING_MARK) {
+                sb.append(Character.toLowerCase(c));
+            }
+        }
+        return sb.toString();
+    }
+
+    public static class Seleccion {
+        public final List<Producto> candidatos;
+        public final BigDecimal precioMinimo;
+        public final BigDecimal precioMaximo;
+
+        public Seleccion(List<Producto> candidatos, BigDecimal precioMinimo, BigDecimal precioMaximo) {
+            this.candidatos = candidatos;
+            this.precioMinimo = precioMinimo;
+            this.precioMaximo = precioMaximo;
+        }
+    }
+}
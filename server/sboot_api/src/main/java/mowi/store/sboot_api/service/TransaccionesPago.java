@@ -0,0 +1,207 @@
+package mowi.store.sboot_api.service;
+
+import mowi.store.sboot_api.model.Pedido;
+import mowi.store.sboot_api.model.Transaccion;
+import mowi.store.sboot_api.repository.PedidoRepository;
+import mowi.store.sboot_api.repository.TransaccionRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Único punto donde cambia el estado de una Transaccion (webhooks de Stripe o consulta directa).
+ *
+ * Los cambios son UPDATE condicionales: aplicar dos veces el mismo evento, o un
+ * evento viejo después de EXITOSO, no modifica nada. Solo el cambio que realmente
+ * pasa a EXITOSO marca el pedido como pagado y vacía el carrito.
+ *
+ * La transacción cubre Transaccion + Pedido. Después del commit se avisa a EstadoPagos
+ * y el carrito se vacía en su propia transacción, para que un fallo ahí no deshaga el pago.
+ */
+@Component
+public class TransaccionesPago {
+
+    // Estado del pedido una vez pagado (el mismo que usa el frontend)
+    public static final String PEDIDO_PAGADO = "PROCESANDO";
+
+    @Autowired
+    private TransaccionRepository transaccionRepository;
+
+    @Autowired
+    private PedidoRepository pedidoRepository;
+
+    @Autowired
+    private CarritoService carritoService;
+
+    @Autowired
+    private EstadoPagos estadoPagos;
+
+    private final TransactionTemplate transaccion;
+
+    @Autowired
+    public TransaccionesPago(PlatformTransactionManager transactionManager) {
+        this.transaccion = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * @param estado EXITOSO, PROCESANDO, PENDIENTE o FALLIDO
+     * @return true si la transacción cambió de estado
+     */
+    public boolean aplicarEstado(String paymentIntentId, String estado, String detalleError) {
+        boolean exitoso = "EXITOSO".equals(estado);
+        Long[] usuarioPagado = {null};
+        Transaccion cambiada = transaccion.execute(status -> {
+            int cambiadas = transaccionRepository.cambiarEstado(paymentIntentId, estado,
+                    exitoso ? LocalDateTime.now() : null, detalleError);
+            if (cambiadas == 0) {
+                return null;
+            }
+            Transaccion trans = transaccionRepository.findByStripePaymentIntentId(paymentIntentId)
+                    .orElseThrow(() -> new RuntimeException("Transacción no encontrada"));
+            if (exitoso) {
+                pedidoRepository.actualizarEstadoSiPendiente(trans.getPedidoId(), PEDIDO_PAGADO, LocalDateTime.now());
+                usuarioPagado[0] = pedidoRepository.findById(trans.getPedidoId()).map(Pedido::getUsuarioId).orElse(null);
+            }
+            return trans;
+        });
+
+        if (cambiada == null) {
+            return false;
+        }
+        System.out.println("💳 Transacción " + paymentIntentId + " -> " + estado);
+        estadoPagos.actualizar(cambiada);
+        if (usuarioPagado[0] != null) {
+            limpiarCarrito(usuarioPagado[0]);
+        }
+        return true;
+    }
+
+    /**
+     * Igual que aplicarEstado() para un lote (conciliación): una consulta que lee y bloquea
+     * las transacciones, un UPDATE por estado destino y uno para los pedidos pagados.
+     *
+     * @param cambios paymentIntentId -> nuevo estado
+     * @return cantidad de transacciones que cambiaron
+     */
+    public int aplicarEstados(Map<String, Cambio> cambios) {
+        if (cambios.isEmpty()) {
+            return 0;
+        }
+        Set<Long> usuariosPagados = new HashSet<>();
+        List<Transaccion> cambiadas = transaccion.execute(status -> {
+            List<Transaccion> afectadas = new ArrayList<>();
+            for (Transaccion trans : transaccionRepository.findByStripePaymentIntentIdIn(cambios.keySet())) {
+                Cambio cambio = cambios.get(trans.getStripePaymentIntentId());
+                // Mismas condiciones que el UPDATE: EXITOSO es final y el mismo estado no es cambio
+                if (!"EXITOSO".equals(trans.getEstado()) && !cambio.estado.equals(trans.getEstado())) {
+                    afectadas.add(trans);
+                }
+            }
+
+            Map<Cambio, List<String>> porCambio = new LinkedHashMap<>();
+            afectadas.forEach(t -> porCambio.computeIfAbsent(cambios.get(t.getStripePaymentIntentId()),
+                    c -> new ArrayList<>()).add(t.getStripePaymentIntentId()));
+            // Las filas están bloqueadas desde la lectura: cada UPDATE tiene que cambiar exactamente esas.
+            // Si no, se deshace el lote en vez de publicar cambios que no ocurrieron
+            LocalDateTime ahora = LocalDateTime.now();
+            porCambio.forEach((cambio, ids) -> {
+                int actualizadas = transaccionRepository.cambiarEstados(ids, cambio.estado,
+                        "EXITOSO".equals(cambio.estado) ? ahora : null, cambio.detalleError);
+                if (actualizadas != ids.size()) {
+                    throw new RuntimeException("Conciliación: se esperaban " + ids.size() + " transacciones a "
+                            + cambio.estado + " y cambiaron " + actualizadas + "; el lote se reintenta");
+                }
+            });
+
+            // Tras el UPDATE masivo las entidades quedaron fuera del contexto: se ajustan solo para publicarlas
+            Set<Long> pedidosPagados = new HashSet<>();
+            for (Transaccion trans : afectadas) {
+                Cambio cambio = cambios.get(trans.getStripePaymentIntentId());
+                trans.setEstado(cambio.estado);
+                trans.setDetalleError(cambio.detalleError);
+                trans.setFechaPago("EXITOSO".equals(cambio.estado) ? ahora : null);
+                if ("EXITOSO".equals(cambio.estado)) {
+                    pedidosPagados.add(trans.getPedidoId());
+                }
+            }
+            if (!pedidosPagados.isEmpty()) {
+                pedidoRepository.actualizarEstadosSiPendientes(pedidosPagados, PEDIDO_PAGADO, LocalDateTime.now());
+                usuariosPagados.addAll(pedidoRepository.findUsuarioIds(pedidosPagados));
+            }
+            return afectadas;
+        });
+
+        for (Transaccion trans : cambiadas) {
+            estadoPagos.actualizar(trans);
+        }
+        usuariosPagados.forEach(this::limpiarCarrito);
+        return cambiadas.size();
+    }
+
+    /**
+     * Da por FALLIDAS transacciones sin resolver que nunca tuvieron Payment Intent
+     * (no hay nada que consultar en Stripe ni pedido que marcar como pagado).
+     *
+     * @return cantidad de transacciones que cambiaron
+     */
+    public int abandonarSinPaymentIntent(Collection<Long> transaccionIds, String detalleError) {
+        if (transaccionIds.isEmpty()) {
+            return 0;
+        }
+        List<Transaccion> cambiadas = transaccion.execute(status -> {
+            List<Transaccion> afectadas = transaccionRepository.findSinPaymentIntentSinResolver(transaccionIds);
+            if (afectadas.isEmpty()) {
+                return afectadas;
+            }
+            List<Long> ids = afectadas.stream().map(Transaccion::getId).toList();
+            int actualizadas = transaccionRepository.abandonarSinPaymentIntent(ids, detalleError);
+            if (actualizadas != ids.size()) {
+                throw new RuntimeException("Conciliación: se esperaban " + ids.size()
+                        + " transacciones sin Payment Intent a FALLIDO y cambiaron " + actualizadas + "; el lote se reintenta");
+            }
+            afectadas.forEach(t -> {
+                t.setEstado("FALLIDO");
+                t.setDetalleError(detalleError);
+            });
+            return afectadas;
+        });
+
+        cambiadas.forEach(estadoPagos::actualizar);
+        return cambiadas.size();
+    }
+
+    // Errores al limpiar el carrito no deshacen la confirmación del pago
+    private void limpiarCarrito(Long usuarioId) {
+        try {
+            carritoService.limpiarCarrito(usuarioId);
+        } catch (Exception e) {
+            System.out.println("⚠️ No se pudo limpiar el carrito del usuario " + usuarioId + ": " + e.getMessage());
+        }
+    }
+
+    // Estado destino de una transacción (con el motivo si falló)
+    public static class Cambio {
+        public final String estado;
+        public final String detalleError;
+
+        public Cambio(String estado, String detalleError) {
+            this.estado = estado;
+            this.detalleError = detalleError;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Cambio otro && estado.equals(otro.estado)
+                    && Objects.equals(detalleError, otro.detalleError);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(estado, detalleError);
+        }
+    }
+}
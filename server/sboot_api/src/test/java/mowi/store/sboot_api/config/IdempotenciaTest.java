@@ -0,0 +1,139 @@
+package mowi.store.sboot_api.config;
+
+import mowi.store.sboot_api.model.RespuestaIdempotente;
+import mowi.store.sboot_api.repository.RespuestaIdempotenteRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.HttpServletResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class IdempotenciaTest {
+
+    private final RespuestaIdempotenteRepository repositorio = mock(RespuestaIdempotenteRepository.class);
+    private final Idempotencia filtro = new Idempotencia();
+    private final AtomicInteger ejecuciones = new AtomicInteger();
+    private volatile int statusHandler = 200;
+
+    // Endpoint simulado: cada ejecución devuelve un ID distinto
+    private final FilterChain handler = (req, res) -> {
+        req.getInputStream().readAllBytes();
+        int n = ejecuciones.incrementAndGet();
+        HttpServletResponse http = (HttpServletResponse) res;
+        http.setStatus(statusHandler);
+        http.setContentType("application/json");
+        http.getOutputStream().write(("{\"pedidoId\":" + n + "}").getBytes(StandardCharsets.UTF_8));
+    };
+
+    @BeforeEach
+    void configurar() {
+        ReflectionTestUtils.setField(filtro, "repositorio", repositorio);
+        ReflectionTestUtils.setField(filtro, "rutas", List.of("/api/pagos/crear-payment-intent"));
+        ReflectionTestUtils.setField(filtro, "ttlHoras", 24L);
+        ReflectionTestUtils.setField(filtro, "maxEnMemoria", 100);
+        ReflectionTestUtils.setField(filtro, "abandonoMinutos", 5L);
+        when(repositorio.findById(anyString())).thenReturn(Optional.empty());
+        when(repositorio.reservar(anyString(), anyString(), any())).thenReturn(1);
+    }
+
+    private static MockHttpServletRequest peticion(String clave, String cuerpo) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/pagos/crear-payment-intent");
+        request.addHeader(Idempotencia.CABECERA, clave);
+        request.setContentType("application/json");
+        request.setContent(cuerpo.getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+
+    private MockHttpServletResponse enviar(String clave, String cuerpo) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filtro.doFilter(peticion(clave, cuerpo), response, handler);
+        return response;
+    }
+
+    // Fila EN_CURSO que dejó una petición que nunca terminó
+    private static RespuestaIdempotente reservaColgada(String clave, String cuerpo, LocalDateTime fecha)
+            throws Exception {
+        RespuestaIdempotente reserva = new RespuestaIdempotente();
+        reserva.setClave("/api/pagos/crear-payment-intent|" + clave);
+        reserva.setHuella(Idempotencia.huella(new Idempotencia.PeticionLeida(peticion(clave, cuerpo))));
+        reserva.setEstado("EN_CURSO");
+        reserva.setFechaCreacion(fecha);
+        return reserva;
+    }
+
+    @Test
+    void elReintentoRepiteLaRespuestaSinEjecutarDeNuevo() throws Exception {
+        MockHttpServletResponse primera = enviar("k1", "{\"pedidoId\":7,\"monto\":10}");
+        MockHttpServletResponse reintento = enviar("k1", "{\"pedidoId\":7,\"monto\":10}");
+
+        assertEquals(1, ejecuciones.get());
+        assertEquals(primera.getContentAsString(), reintento.getContentAsString());
+        assertEquals("true", reintento.getHeader("Idempotent-Replayed"));
+        verify(repositorio).completar(eq("/api/pagos/crear-payment-intent|k1"), eq(200), any(), anyString());
+    }
+
+    @Test
+    void laMismaClaveConOtraPeticionSeRechaza() throws Exception {
+        enviar("k2", "{\"pedidoId\":7,\"monto\":10}");
+        MockHttpServletResponse otra = enviar("k2", "{\"pedidoId\":7,\"monto\":99}");
+
+        assertEquals(422, otra.getStatus());
+        assertEquals(1, ejecuciones.get());
+    }
+
+    @Test
+    void siLaPeticionFallaLaClaveSeLibera() throws Exception {
+        statusHandler = 500;
+        enviar("k3", "{}");
+        verify(repositorio).liberar("/api/pagos/crear-payment-intent|k3");
+
+        statusHandler = 200;
+        enviar("k3", "{}");
+        assertEquals(2, ejecuciones.get());
+    }
+
+    @Test
+    void unaReservaAbandonadaLaReclamaElReintento() throws Exception {
+        RespuestaIdempotente colgada = reservaColgada("k4", "{}", LocalDateTime.now().minusMinutes(10));
+        when(repositorio.findById(colgada.getClave())).thenReturn(Optional.of(colgada));
+        when(repositorio.reservar(eq(colgada.getClave()), anyString(), any())).thenReturn(0);
+        when(repositorio.reclamar(eq(colgada.getClave()), eq(colgada.getHuella()), any(), any())).thenReturn(1);
+
+        MockHttpServletResponse reintento = enviar("k4", "{}");
+
+        assertEquals(200, reintento.getStatus());
+        assertEquals(1, ejecuciones.get());
+    }
+
+    @Test
+    void unaReservaRecienteSigueDandoConflicto() throws Exception {
+        RespuestaIdempotente enCurso = reservaColgada("k5", "{}", LocalDateTime.now().minusSeconds(10));
+        when(repositorio.findById(enCurso.getClave())).thenReturn(Optional.of(enCurso));
+
+        assertEquals(409, enviar("k5", "{}").getStatus());
+        assertEquals(0, ejecuciones.get());
+        verify(repositorio, never()).reclamar(anyString(), anyString(), any(), any());
+    }
+
+    @Test
+    void sinCabeceraPasaDeLargo() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/pagos/crear-payment-intent");
+        filtro.doFilter(request, new MockHttpServletResponse(), handler);
+        filtro.doFilter(request, new MockHttpServletResponse(), handler);
+
+        assertEquals(2, ejecuciones.get());
+        verifyNoInteractions(repositorio);
+    }
+}
@@ -0,0 +1,103 @@
+package mowi.store.sboot_api.config;
+
+import mowi.store.sboot_api.model.*;
+import mowi.store.sboot_api.repository.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// Guardia N+1 en modo estricto (perfil test) sobre endpoints reales contra H2
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class LimiteConsultasTest {
+
+    // Más líneas que consultas.max-por-peticion: una consulta por línea haría fallar la petición
+    private static final int LINEAS = 30;
+    private static final long USUARIO = 77L;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private LimiteConsultas limiteConsultas;
+
+    @Autowired
+    private CategoriaRepository categoriaRepository;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private CarritoRepository carritoRepository;
+
+    @Autowired
+    private ItemCarritoRepository itemCarritoRepository;
+
+    @Autowired
+    private PedidoRepository pedidoRepository;
+
+    @Autowired
+    private DetallePedidoRepository detallePedidoRepository;
+
+    private Long pedidoId;
+
+    @BeforeEach
+    void crearDatos() {
+        detallePedidoRepository.deleteAll();
+        pedidoRepository.deleteAll();
+        itemCarritoRepository.deleteAll();
+        carritoRepository.deleteAll();
+
+        Carrito carrito = carritoRepository.save(new Carrito(USUARIO));
+        Pedido pedido = pedidoRepository.save(new Pedido(USUARIO, new BigDecimal("300.00"), "STRIPE"));
+        pedidoId = pedido.getId();
+        for (int i = 0; i < LINEAS; i++) {
+            // Cada producto con su propia categoría, para que cargarlas una por una también se note
+            Categoria categoria = categoriaRepository.save(new Categoria("Categoria " + pedidoId + "-" + i, null));
+            Producto producto = productoRepository.save(new Producto("Producto " + i, "Descripcion " + i,
+                    categoria, new BigDecimal("10.00"), 100, null));
+            itemCarritoRepository.save(new ItemCarrito(carrito, producto, 1));
+            detallePedidoRepository.save(new DetallePedido(pedido, producto, 1, producto.getPrecio()));
+        }
+    }
+
+    @Test
+    void detalleDePedidoSinNMasUno() throws Exception {
+        mockMvc.perform(get("/api/pedidos/" + pedidoId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.detalles", hasSize(LINEAS)));
+    }
+
+    @Test
+    void carritoSinNMasUno() throws Exception {
+        mockMvc.perform(get("/api/carrito").param("usuarioId", String.valueOf(USUARIO)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(LINEAS)));
+    }
+
+    @Test
+    void elModoEstrictoFallaAlPasarDelLimite() {
+        Object maximo = ReflectionTestUtils.getField(limiteConsultas, "maxPorPeticion");
+        ReflectionTestUtils.setField(limiteConsultas, "maxPorPeticion", 0);
+        try {
+            Exception error = assertThrows(Exception.class,
+                    () -> mockMvc.perform(get("/api/pedidos/" + pedidoId)));
+            assertTrue(error.getMessage().contains("posible N+1"), error.getMessage());
+        } finally {
+            ReflectionTestUtils.setField(limiteConsultas, "maxPorPeticion", maximo);
+        }
+    }
+}
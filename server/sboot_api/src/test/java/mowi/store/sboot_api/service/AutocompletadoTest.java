@@ -0,0 +1,123 @@
+package mowi.store.sboot_api.service;
+
+import mowi.store.sboot_api.model.Categoria;
+import mowi.store.sboot_api.model.Producto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Búsqueda por prefijo en el trie: plegado, inicio de palabra, orden por vendidos y límites
+class AutocompletadoTest {
+
+    private Autocompletado autocompletado;
+    private Categoria computacion;
+    private Categoria hogar;
+
+    private static Producto producto(long id, String nombre, Integer vendidos, Categoria categoria, boolean activo) {
+        Producto p = new Producto();
+        p.setId(id);
+        p.setNombre(nombre);
+        p.setVendidos(vendidos);
+        p.setCategoria(categoria);
+        p.setActivo(activo);
+        return p;
+    }
+
+    private static List<String> textos(List<Autocompletado.Sugerencia> sugerencias) {
+        return sugerencias.stream().map(s -> s.texto).toList();
+    }
+
+    @BeforeEach
+    void preparar() {
+        computacion = new Categoria("Computación", null);
+        computacion.setId(10L);
+        hogar = new Categoria("Hogar", null);
+        hogar.setId(20L);
+
+        autocompletado = new Autocompletado();
+        autocompletado.reconstruir(List.of(
+                producto(1, "Laptop Lenovo", 50, computacion, true),
+                producto(2, "Laptop HP", 80, computacion, true),
+                producto(3, "Lámpara LED", 5, hogar, true),
+                producto(4, "Licuadora", 300, hogar, false),
+                producto(5, "Hervidor", null, hogar, true)
+        ));
+    }
+
+    @Test
+    void ordenaPorVendidos() {
+        assertEquals(List.of("Laptop HP", "Laptop Lenovo", "Lámpara LED"),
+                textos(autocompletado.sugerir("la", 10)));
+    }
+
+    @Test
+    void plegaTildesYMayusculas() {
+        assertEquals(List.of("Lámpara LED"), textos(autocompletado.sugerir("LÁM", 10)));
+        assertEquals(List.of("Lámpara LED"), textos(autocompletado.sugerir("lam", 10)));
+    }
+
+    @Test
+    void sugiereDesdeCualquierPalabraDelNombre() {
+        assertEquals(List.of("Laptop Lenovo", "Lámpara LED"), textos(autocompletado.sugerir("le", 10)));
+        assertEquals(List.of("Laptop Lenovo"), textos(autocompletado.sugerir("len", 10)));
+        // El prefijo puede cruzar palabras
+        assertEquals(List.of("Laptop HP"), textos(autocompletado.sugerir("laptop h", 10)));
+    }
+
+    @Test
+    void lasCategoriasPesanLaSumaDeSusProductosActivos() {
+        List<Autocompletado.Sugerencia> sugerencias = autocompletado.sugerir("comp", 10);
+        assertEquals(1, sugerencias.size());
+        Autocompletado.Sugerencia categoria = sugerencias.get(0);
+        assertEquals("CATEGORIA", categoria.tipo);
+        assertEquals(10L, categoria.id);
+        assertEquals(130, categoria.peso);
+
+        // La licuadora está inactiva: ni se sugiere ni suma a "Hogar"
+        assertTrue(autocompletado.sugerir("licu", 10).isEmpty());
+        assertEquals(5, autocompletado.sugerir("hogar", 10).get(0).peso);
+    }
+
+    @Test
+    void sinVendidosCuentaComoCero() {
+        Autocompletado.Sugerencia hervidor = autocompletado.sugerir("herv", 10).get(0);
+        assertEquals("PRODUCTO", hervidor.tipo);
+        assertEquals(0, hervidor.peso);
+    }
+
+    @Test
+    void prefijoVacioODesconocidoNoSugiereNada() {
+        assertTrue(autocompletado.sugerir("", 10).isEmpty());
+        assertTrue(autocompletado.sugerir(" - ", 10).isEmpty());
+        assertTrue(autocompletado.sugerir("xyz", 10).isEmpty());
+    }
+
+    @Test
+    void respetaElLimiteYElMaximoPorNodo() {
+        assertEquals(List.of("Laptop HP"), textos(autocompletado.sugerir("la", 1)));
+
+        List<Producto> muchos = new ArrayList<>();
+        for (int i = 1; i <= Autocompletado.MAX_SUGERENCIAS + 5; i++) {
+            muchos.add(producto(i, "Producto " + i, i, null, true));
+        }
+        autocompletado.reconstruir(muchos);
+
+        List<Autocompletado.Sugerencia> sugerencias = autocompletado.sugerir("prod", 100);
+        assertEquals(Autocompletado.MAX_SUGERENCIAS, sugerencias.size());
+        assertEquals("Producto 15", sugerencias.get(0).texto);
+        assertEquals("Producto 6", sugerencias.get(Autocompletado.MAX_SUGERENCIAS - 1).texto);
+    }
+
+    @Test
+    void reconstruirReemplazaElCatalogoAnterior() {
+        autocompletado.reconstruir(List.of(producto(6, "Teclado", 3, computacion, true)));
+
+        assertTrue(autocompletado.sugerir("lap", 10).isEmpty());
+        assertEquals(List.of("Teclado"), textos(autocompletado.sugerir("tec", 10)));
+        assertEquals(3, autocompletado.sugerir("comp", 10).get(0).peso);
+    }
+}
@@ -0,0 +1,51 @@
+package mowi.store.sboot_api.service;
+
+import mowi.store.sboot_api.model.Producto;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Lectura de los IDs que devuelve Gemini, restringida a los candidatos del prompt
+class BuscaGeminiServiceTest {
+
+    private static final List<Producto> CANDIDATOS = List.of(producto(1), producto(5), producto(12), producto(99));
+
+    private static Producto producto(long id) {
+        Producto p = new Producto();
+        p.setId(id);
+        return p;
+    }
+
+    private static List<Long> ids(String respuesta) {
+        return BuscaGeminiService.extraerProductosDeLaRespuesta(respuesta, CANDIDATOS).stream()
+                .map(Producto::getId)
+                .toList();
+    }
+
+    @Test
+    void leeLosIdsDeLosCandidatos() {
+        assertEquals(List.of(1L, 5L, 12L), ids("1, 5, 12"));
+        assertEquals(List.of(12L, 5L), ids("ID:12 y ID:5."));
+        assertEquals(List.of(), ids("sin_resultados"));
+    }
+
+    @Test
+    void ignoraIdsFueraDeLosCandidatosYPrecios() {
+        // 7 existe en el catálogo pero no se mandó en el prompt; 499.99 y $12 son precios
+        assertEquals(List.of(5L), ids("7, 5 | $499.99 | 1.99 | $12"));
+    }
+
+    @Test
+    void unPrecioPartidoEntreFragmentosTambienSeDescarta() {
+        List<Long> encontrados = new ArrayList<>();
+        BuscaGeminiService.LectorIds lector = new BuscaGeminiService.LectorIds(CANDIDATOS, p -> encontrados.add(p.getId()));
+        lector.leer("5, 499.");
+        lector.leer("99, 1");
+        lector.leer("2");
+        lector.terminar();
+        assertEquals(List.of(5L, 12L), encontrados);
+    }
+}
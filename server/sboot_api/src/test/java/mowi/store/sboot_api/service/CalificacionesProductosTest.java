@@ -0,0 +1,87 @@
+package mowi.store.sboot_api.service;
+
+import mowi.store.sboot_api.repository.ResenaRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+// Agregados incrementales frente al recálculo completo
+class CalificacionesProductosTest {
+
+    private final ResenaRepository resenaRepository = mock(ResenaRepository.class);
+    private final CalificacionesProductos calificaciones = new CalificacionesProductos();
+    private final List<ResenaRepository.ConteoCalificacion> enBase = new ArrayList<>();
+
+    @BeforeEach
+    void configurar() {
+        ReflectionTestUtils.setField(calificaciones, "resenaRepository", resenaRepository);
+        when(resenaRepository.contarPorProductoYCalificacion()).thenAnswer(i -> List.copyOf(enBase));
+    }
+
+    @AfterEach
+    void limpiar() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private static ResenaRepository.ConteoCalificacion conteo(long productoId, int calificacion, long cantidad) {
+        return new ResenaRepository.ConteoCalificacion() {
+            public Long getProductoId() { return productoId; }
+            public Integer getCalificacion() { return calificacion; }
+            public Long getCantidad() { return cantidad; }
+        };
+    }
+
+    // Commit de la transacción simulada: la fila ya está en la base y corren los afterCompletion
+    private void confirmar(ResenaRepository.ConteoCalificacion fila) {
+        enBase.add(fila);
+        List<TransactionSynchronization> sincronizaciones = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        sincronizaciones.forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+    }
+
+    @Test
+    void sumaYRestaSinTransaccion() {
+        enBase.add(conteo(1, 4, 2));
+        assertEquals(2, calificaciones.obtener(1L).total);
+        calificaciones.registrar(1L, 5);
+        calificaciones.quitar(1L, 4);
+
+        CalificacionesProductos.ResumenCalificaciones resumen = calificaciones.obtener(1L);
+        assertEquals(2, resumen.total);
+        assertEquals(4.5, resumen.promedio);
+        assertEquals(1, resumen.histograma.get(4));
+        assertEquals(1, resumen.histograma.get(5));
+    }
+
+    @Test
+    void unaResenaQueConfirmaDuranteElRecalculoCuentaUnaSolaVez() throws Exception {
+        calificaciones.recalcular();
+
+        TransactionSynchronizationManager.initSynchronization();
+        calificaciones.registrar(1L, 5);
+
+        // El recálculo espera a que la reseña termine su transacción
+        CompletableFuture<Void> recalculo = CompletableFuture.runAsync(calificaciones::recalcular);
+        Thread.sleep(100);
+        assertFalse(recalculo.isDone());
+
+        confirmar(conteo(1, 5, 1));
+        recalculo.get(5, TimeUnit.SECONDS);
+
+        assertEquals(1, calificaciones.obtener(1L).total);
+        assertEquals(5.0, calificaciones.obtener(1L).promedio);
+    }
+}
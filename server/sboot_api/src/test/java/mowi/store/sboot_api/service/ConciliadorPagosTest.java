@@ -0,0 +1,187 @@
+package mowi.store.sboot_api.service;
+
+import com.sun.net.httpserver.HttpServer;
+import mowi.store.sboot_api.model.Transaccion;
+import mowi.store.sboot_api.repository.TransaccionRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+// Contra un mock local de la API de Stripe: listado de Payment Intents y consulta de uno
+class ConciliadorPagosTest {
+
+    private HttpServer servidor;
+    private final AtomicInteger listados = new AtomicInteger();
+    private final AtomicInteger consultados = new AtomicInteger();
+    // Franja con mucho movimiento: cada listado trae solo intents ajenos y dice que hay más
+    private volatile boolean franjaLlena = false;
+
+    private final TransaccionRepository transaccionRepository = mock(TransaccionRepository.class);
+    private final TransaccionesPago transaccionesPago = mock(TransaccionesPago.class);
+    private final ConciliadorPagos conciliador = new ConciliadorPagos();
+
+    @BeforeEach
+    void iniciarMock() throws Exception {
+        servidor = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        servidor.setExecutor(Executors.newCachedThreadPool());
+        servidor.createContext("/v1/payment_intents", exchange -> {
+            String json;
+            if (exchange.getRequestURI().getPath().equals("/v1/payment_intents")) {
+                listados.incrementAndGet();
+                json = franjaLlena
+                        ? "{\"object\":\"list\",\"url\":\"/v1/payment_intents\",\"has_more\":true,\"data\":["
+                        + intent("pi_otro" + listados.get(), "succeeded") + "]}"
+                        : "{\"object\":\"list\",\"url\":\"/v1/payment_intents\",\"has_more\":false,\"data\":["
+                        + intent("pi_1", "succeeded") + "," + intent("pi_2", "canceled") + ","
+                        + intent("pi_3", "requires_payment_method") + "," + intent("pi_otro", "succeeded") + "]}";
+            } else {
+                // pi_4 no salió en el listado: se consulta sola
+                consultados.incrementAndGet();
+                json = intent("pi_4", "processing");
+            }
+            byte[] body = json.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        servidor.start();
+
+        String base = "http://127.0.0.1:" + servidor.getAddress().getPort();
+        PasarelaStripe pasarela = new PasarelaStripe("sk_test_mock", base, 1000, 2000, 0, 4, 50, 5, 60_000);
+        ReflectionTestUtils.setField(conciliador, "transaccionRepository", transaccionRepository);
+        ReflectionTestUtils.setField(conciliador, "transaccionesPago", transaccionesPago);
+        ReflectionTestUtils.setField(conciliador, "pasarelaStripe", pasarela);
+        ReflectionTestUtils.setField(conciliador, "edadMinimaMinutos", 15L);
+        ReflectionTestUtils.setField(conciliador, "tamanoPagina", 100);
+        ReflectionTestUtils.setField(conciliador, "maxPorCiclo", 1000);
+        ReflectionTestUtils.setField(conciliador, "llamadasPorSegundo", 50.0);
+        ReflectionTestUtils.setField(conciliador, "abandonoHoras", 24L);
+        when(transaccionesPago.aplicarEstados(anyMap())).thenAnswer(i -> ((Map<?, ?>) i.getArgument(0)).size());
+        when(transaccionesPago.abandonarSinPaymentIntent(anyCollection(), anyString()))
+                .thenAnswer(i -> ((Collection<?>) i.getArgument(0)).size());
+    }
+
+    @AfterEach
+    void detenerMock() {
+        servidor.stop(0);
+    }
+
+    private static String intent(String id, String status) {
+        return "{\"id\":\"" + id + "\",\"object\":\"payment_intent\",\"status\":\"" + status + "\"}";
+    }
+
+    private static Transaccion transaccion(long id, String paymentIntentId, String estado, LocalDateTime creada) {
+        Transaccion trans = new Transaccion(id, 10.0, paymentIntentId);
+        trans.setId(id);
+        trans.setEstado(estado);
+        trans.setFechaCreacion(creada);
+        return trans;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void aplicaLoQueDiceStripeEnUnSoloLote() {
+        LocalDateTime hace1Hora = LocalDateTime.now().minusHours(1);
+        LocalDateTime hace2Dias = LocalDateTime.now().minusDays(2);
+        when(transaccionRepository.findSinResolverDespuesDe(any(), any(), any(), any(), any())).thenReturn(List.of(
+                transaccion(1, "pi_1", "PENDIENTE", hace1Hora),
+                transaccion(2, "pi_2", "PENDIENTE", hace1Hora),
+                transaccion(3, "pi_3", "PENDIENTE", hace2Dias),
+                transaccion(4, "pi_4", "PENDIENTE", hace1Hora),
+                transaccion(5, null, "PENDIENTE", hace1Hora),
+                transaccion(6, null, "PENDIENTE", hace2Dias)));
+
+        Map<String, Object> estado = conciliador.conciliar();
+
+        ArgumentCaptor<Map<String, TransaccionesPago.Cambio>> cambios = ArgumentCaptor.forClass(Map.class);
+        verify(transaccionesPago).aplicarEstados(cambios.capture());
+        assertEquals("EXITOSO", cambios.getValue().get("pi_1").estado);
+        assertEquals("FALLIDO", cambios.getValue().get("pi_2").estado);
+        assertEquals("FALLIDO", cambios.getValue().get("pi_3").estado);
+        assertTrue(cambios.getValue().get("pi_3").detalleError.startsWith("Abandonado"));
+        assertEquals("PROCESANDO", cambios.getValue().get("pi_4").estado);
+        assertFalse(cambios.getValue().containsKey("pi_otro"));
+        // Sin Payment Intent: solo la vieja se abandona, sin llamar a Stripe por ella
+        verify(transaccionesPago).abandonarSinPaymentIntent(eq(List.of(6L)), startsWith("Abandonado"));
+
+        // Un listado para toda la página y una consulta suelta para la que faltó
+        assertEquals(1, listados.get());
+        assertEquals(1, consultados.get());
+        assertEquals(6, estado.get("revisadas"));
+        assertEquals(5, estado.get("actualizadas"));
+        assertEquals(2, estado.get("llamadasStripe"));
+        assertEquals(1, estado.get("consultasSueltas"));
+        assertEquals(0L, estado.get("listadosAlTope"));
+    }
+
+    @Test
+    void sinPendientesNoLlamaAStripe() {
+        when(transaccionRepository.findSinResolverDespuesDe(any(), any(), any(), any(), any())).thenReturn(List.of());
+
+        Map<String, Object> estado = conciliador.conciliar();
+
+        assertEquals(0, listados.get() + consultados.get());
+        assertEquals(0, estado.get("revisadas"));
+        verify(transaccionesPago, never()).aplicarEstados(anyMap());
+    }
+
+    @Test
+    void elDisparoManualNoEsperaAlCicloNiEncolaOtro() throws Exception {
+        CountDownLatch enCiclo = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        when(transaccionRepository.findSinResolverDespuesDe(any(), any(), any(), any(), any())).thenAnswer(i -> {
+            enCiclo.countDown();
+            liberar.await(5, TimeUnit.SECONDS);
+            return List.of();
+        });
+
+        long inicio = System.currentTimeMillis();
+        assertEquals(true, conciliador.solicitar().get("enCurso"));
+        assertTrue(enCiclo.await(5, TimeUnit.SECONDS));
+        // Con el ciclo en curso: ni el segundo disparo ni el programado esperan ni corren otro
+        assertEquals(true, conciliador.solicitar().get("enCurso"));
+        assertEquals(0L, conciliador.conciliar().get("ciclos"));
+        assertTrue(System.currentTimeMillis() - inicio < 1000);
+
+        liberar.countDown();
+        for (int i = 0; i < 50 && (Boolean) conciliador.estado().get("enCurso"); i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(false, conciliador.estado().get("enCurso"));
+        assertEquals(1L, conciliador.estado().get("ciclos"));
+        verify(transaccionRepository, times(1)).findSinResolverDespuesDe(any(), any(), any(), any(), any());
+        conciliador.detener();
+    }
+
+    @Test
+    void unaFranjaLlenaTerminaEnConsultasSueltasYSeCuenta() {
+        franjaLlena = true;
+        when(transaccionRepository.findSinResolverDespuesDe(any(), any(), any(), any(), any())).thenReturn(List.of(
+                transaccion(1, "pi_1", "PENDIENTE", LocalDateTime.now().minusHours(1))));
+
+        Map<String, Object> estado = conciliador.conciliar();
+
+        assertEquals(5, listados.get());
+        assertEquals(1, consultados.get());
+        assertEquals(1, estado.get("consultasSueltas"));
+        assertEquals(1L, estado.get("listadosAlTope"));
+    }
+}
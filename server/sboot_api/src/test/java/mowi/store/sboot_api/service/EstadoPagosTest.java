@@ -0,0 +1,68 @@
+package mowi.store.sboot_api.service;
+
+import mowi.store.sboot_api.model.Transaccion;
+import mowi.store.sboot_api.repository.TransaccionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class EstadoPagosTest {
+
+    private final TransaccionRepository repositorio = mock(TransaccionRepository.class);
+    private final EstadoPagos estadoPagos = new EstadoPagos();
+
+    @BeforeEach
+    void configurar() {
+        ReflectionTestUtils.setField(estadoPagos, "transaccionRepository", repositorio);
+        ReflectionTestUtils.setField(estadoPagos, "esperaMaximaMs", 25_000L);
+        ReflectionTestUtils.setField(estadoPagos, "maxEsperando", 100);
+        when(repositorio.findFirstByPedidoIdOrderByIdDesc(7L)).thenReturn(Optional.of(transaccion(1L, "PENDIENTE")));
+    }
+
+    private static Transaccion transaccion(Long id, String estado) {
+        Transaccion trans = new Transaccion(7L, 50.0, "pi_" + id);
+        trans.setId(id);
+        trans.setEstado(estado);
+        return trans;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String estadoDe(DeferredResult<Map<String, Object>> resultado) {
+        return (String) ((Map<String, Object>) resultado.getResult()).get("estado");
+    }
+
+    @Test
+    void laEsperaTerminaCuandoCambiaElEstado() {
+        DeferredResult<Map<String, Object>> espera = estadoPagos.esperar(7L, "PENDIENTE", null);
+        assertFalse(espera.hasResult());
+        assertEquals(1, estadoPagos.getCantidadEsperando());
+
+        estadoPagos.actualizar(transaccion(1L, "EXITOSO"));
+
+        assertEquals("EXITOSO", estadoDe(espera));
+        assertEquals(0, estadoPagos.getCantidadEsperando());
+        // Una sola lectura de la base para todo lo anterior
+        verify(repositorio, times(1)).findFirstByPedidoIdOrderByIdDesc(7L);
+    }
+
+    @Test
+    void respondeAlInstanteSiElClienteVaAtrasado() {
+        DeferredResult<Map<String, Object>> espera = estadoPagos.esperar(7L, "PROCESANDO", null);
+        assertEquals("PENDIENTE", estadoDe(espera));
+    }
+
+    @Test
+    void unAvisoAtrasadoNoPisaUnPagoExitoso() {
+        estadoPagos.actualizar(transaccion(1L, "EXITOSO"));
+        estadoPagos.actualizar(transaccion(1L, "PROCESANDO"));
+
+        assertEquals("EXITOSO", estadoPagos.obtener(7L).get("estado"));
+    }
+}
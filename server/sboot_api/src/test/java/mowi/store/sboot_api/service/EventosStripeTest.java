@@ -0,0 +1,103 @@
+package mowi.store.sboot_api.service;
+
+import com.stripe.net.Webhook;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventosStripeTest {
+
+    private static final String SECRETO = "whsec_prueba";
+
+    private final List<EventosStripe.EventoPago> aplicados = new CopyOnWriteArrayList<>();
+    private EventosStripe eventos;
+
+    @AfterEach
+    void detener() throws InterruptedException {
+        eventos.alDetener();
+    }
+
+    // Cabecera Stripe-Signature igual a la que genera Stripe: t=...,v1=HMAC(t.payload)
+    private static String firmar(String payload, String secreto) throws Exception {
+        long t = Webhook.Util.getTimeNow();
+        return "t=" + t + ",v1=" + Webhook.Util.computeHmacSha256(secreto, t + "." + payload);
+    }
+
+    private static String evento(String id, String tipo, String paymentIntentId) {
+        return "{\"id\":\"" + id + "\",\"type\":\"" + tipo + "\",\"data\":{\"object\":"
+                + "{\"id\":\"" + paymentIntentId + "\",\"object\":\"payment_intent\"}}}";
+    }
+
+    @Test
+    void aplicaElEventoFirmadoEnUnTrabajador() throws Exception {
+        CountDownLatch aplicado = new CountDownLatch(1);
+        eventos = new EventosStripe(SECRETO, 300, 1, 10, e -> {
+            aplicados.add(e);
+            aplicado.countDown();
+        });
+
+        String payload = evento("evt_1", "payment_intent.succeeded", "pi_1");
+        EventosStripe.EventoPago evento = eventos.verificar(payload, firmar(payload, SECRETO));
+        assertTrue(eventos.encolar(evento));
+
+        assertTrue(aplicado.await(2, TimeUnit.SECONDS));
+        assertEquals("pi_1", aplicados.get(0).paymentIntentId);
+        assertEquals("EXITOSO", aplicados.get(0).estado);
+    }
+
+    @Test
+    void rechazaFirmasInvalidas() throws Exception {
+        eventos = new EventosStripe(SECRETO, 300, 1, 10, aplicados::add);
+        String payload = evento("evt_1", "payment_intent.succeeded", "pi_1");
+
+        assertThrows(RuntimeException.class, () -> eventos.verificar(payload, firmar(payload, "whsec_otro")));
+        assertThrows(RuntimeException.class, () -> eventos.verificar(payload, null));
+    }
+
+    @Test
+    void ignoraReentregasYTiposSinInteres() throws Exception {
+        CountDownLatch aplicado = new CountDownLatch(1);
+        eventos = new EventosStripe(SECRETO, 300, 1, 10, e -> {
+            aplicados.add(e);
+            aplicado.countDown();
+        });
+
+        String otro = evento("evt_0", "charge.refunded", "ch_1");
+        assertNull(eventos.verificar(otro, firmar(otro, SECRETO)));
+
+        String payload = evento("evt_2", "payment_intent.payment_failed", "pi_2");
+        EventosStripe.EventoPago evento = eventos.verificar(payload, firmar(payload, SECRETO));
+        assertTrue(eventos.encolar(evento));
+        assertTrue(eventos.encolar(evento));
+
+        assertTrue(aplicado.await(2, TimeUnit.SECONDS));
+        eventos.alDetener();
+        assertEquals(1, aplicados.size());
+        assertEquals("FALLIDO", aplicados.get(0).estado);
+    }
+
+    @Test
+    void rechazaConColaLlena() throws Exception {
+        CountDownLatch liberar = new CountDownLatch(1);
+        eventos = new EventosStripe(SECRETO, 300, 1, 1, e -> {
+            try {
+                liberar.await();
+            } catch (InterruptedException ignored) {
+            }
+        });
+
+        boolean rechazado = false;
+        for (int i = 0; i < 5; i++) {
+            String payload = evento("evt_" + i, "payment_intent.succeeded", "pi_" + i);
+            rechazado |= !eventos.encolar(eventos.verificar(payload, firmar(payload, SECRETO)));
+        }
+        liberar.countDown();
+        assertTrue(rechazado);
+    }
+}
@@ -0,0 +1,98 @@
+package mowi.store.sboot_api.service;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeminiClientTest {
+
+    private HttpServer servidor;
+    private final AtomicInteger llamadas = new AtomicInteger();
+    private volatile int status = 200;
+    private volatile long demoraMs = 0;
+
+    @BeforeEach
+    void iniciarStub() throws Exception {
+        servidor = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        servidor.createContext("/generate", exchange -> {
+            llamadas.incrementAndGet();
+            try {
+                Thread.sleep(demoraMs);
+            } catch (InterruptedException ignored) {
+            }
+            byte[] body = "{\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"1, 5, 12\"}]}}]}"
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        servidor.createContext("/stream", exchange -> {
+            llamadas.incrementAndGet();
+            exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(200, 0);
+            for (String fragmento : new String[]{"1, ", "5, 1", "2"}) {
+                String evento = "data: {\"candidates\":[{\"content\":{\"parts\":[{\"text\":\""
+                        + fragmento + "\"}]}}]}\n\n";
+                exchange.getResponseBody().write(evento.getBytes(StandardCharsets.UTF_8));
+                exchange.getResponseBody().flush();
+            }
+            exchange.close();
+        });
+        servidor.start();
+    }
+
+    @AfterEach
+    void detenerStub() {
+        servidor.stop(0);
+    }
+
+    private GeminiClient cliente(long plazoMs, int umbralFallos) {
+        String url = "http://127.0.0.1:" + servidor.getAddress().getPort() + "/generate";
+        String urlStream = "http://127.0.0.1:" + servidor.getAddress().getPort() + "/stream?alt=sse";
+        return new GeminiClient(url, urlStream, "test", 1000, plazoMs, 4, umbralFallos, 60_000);
+    }
+
+    @Test
+    void devuelveTextoDelPrimerCandidato() throws Exception {
+        assertEquals("1, 5, 12", cliente(2000, 3).generarContenido("laptop").get());
+    }
+
+    @Test
+    void abreElCircuitoTrasFallosSeguidos() {
+        status = 500;
+        GeminiClient cliente = cliente(2000, 2);
+
+        assertThrows(ExecutionException.class, () -> cliente.generarContenido("a").get());
+        assertThrows(ExecutionException.class, () -> cliente.generarContenido("b").get());
+        assertEquals(CircuitBreaker.Estado.ABIERTO, cliente.getEstadoCircuito());
+
+        // Con el circuito abierto ya no se llama al servidor
+        assertThrows(ExecutionException.class, () -> cliente.generarContenido("c").get());
+        assertEquals(2, llamadas.get());
+    }
+
+    @Test
+    void fallaCuandoSeVenceElPlazo() {
+        demoraMs = 1000;
+        assertThrows(ExecutionException.class, () -> cliente(200, 3).generarContenido("lento").get());
+    }
+
+    @Test
+    void entregaLosFragmentosDelStreamAMedidaQueLlegan() throws Exception {
+        List<String> fragmentos = new CopyOnWriteArrayList<>();
+        String completo = cliente(2000, 3).generarContenidoStream("laptop", fragmentos::add).get();
+
+        assertEquals(List.of("1, ", "5, 1", "2"), fragmentos);
+        assertEquals("1, 5, 12", completo);
+    }
+}
@@ -0,0 +1,105 @@
+package mowi.store.sboot_api.service;
+
+import mowi.store.sboot_api.model.Categoria;
+import mowi.store.sboot_api.model.Producto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Tokenización, coincidencia por prefijo, puntuación por campo y reindexado incremental
+class IndiceBusquedaTest {
+
+    private IndiceBusqueda indice;
+    private Producto camara;
+    private Producto laptop;
+    private Producto mochila;
+
+    private static Producto producto(long id, String nombre, String descripcion, String categoria) {
+        Producto p = new Producto();
+        p.setId(id);
+        p.setNombre(nombre);
+        p.setDescripcion(descripcion);
+        Categoria c = new Categoria(categoria, null);
+        c.setId(id * 10);
+        p.setCategoria(c);
+        return p;
+    }
+
+    @BeforeEach
+    void preparar() {
+        camara = producto(1, "Cámara Sony", "Cámara digital compacta", "Fotografía");
+        laptop = producto(2, "Laptop Lenovo", "Laptop para oficina con cámara web", "Computación");
+        mochila = producto(3, "Mochila", "Mochila para laptop", "Accesorios");
+        indice = new IndiceBusqueda();
+        indice.sincronizar(List.of(camara, laptop, mochila));
+    }
+
+    @Test
+    void tokenizaSinTildesNiMayusculas() {
+        assertEquals(List.of("camara", "nandu", "4k"), IndiceBusqueda.tokenizar("¡Cámara  Ñandú-4K!"));
+        assertTrue(IndiceBusqueda.tokenizar(null).isEmpty());
+        assertTrue(IndiceBusqueda.tokenizar(" -- ").isEmpty());
+    }
+
+    @Test
+    void laConsultaSePliegaIgualQueElTexto() {
+        assertEquals(indice.buscar("cámara", IndiceBusqueda.TODOS_LOS_CAMPOS),
+                indice.buscar("CAMARA", IndiceBusqueda.TODOS_LOS_CAMPOS));
+        assertTrue(indice.buscar("fotografia", IndiceBusqueda.TODOS_LOS_CAMPOS).containsKey(1L));
+    }
+
+    @Test
+    void elNombrePesaMasQueLaCategoriaYLaDescripcion() {
+        // Exacta en nombre 3*2, exacta en descripción 1*2
+        Map<Long, Integer> camaras = indice.buscar("camara", IndiceBusqueda.TODOS_LOS_CAMPOS);
+        assertEquals(Map.of(1L, 6, 2L, 2), camaras);
+
+        // Exacta en categoría 2*2
+        assertEquals(Map.of(3L, 4), indice.buscar("accesorios", IndiceBusqueda.TODOS_LOS_CAMPOS));
+    }
+
+    @Test
+    void cadaTerminoSeBuscaComoPrefijo() {
+        // "lap": prefijo en el nombre de la laptop (3) y en la descripción de la mochila (1)
+        assertEquals(Map.of(2L, 3, 3L, 1), indice.buscar("lap", IndiceBusqueda.TODOS_LOS_CAMPOS));
+        assertEquals(Map.of(2L, 6, 3L, 2), indice.buscar("laptop", IndiceBusqueda.TODOS_LOS_CAMPOS));
+    }
+
+    @Test
+    void soloPuntuanLosCamposPedidos() {
+        assertEquals(Map.of(2L, 6), indice.buscar("laptop", IndiceBusqueda.CAMPO_NOMBRE));
+        assertTrue(indice.buscar("oficina", IndiceBusqueda.CAMPO_NOMBRE).isEmpty());
+    }
+
+    @Test
+    void todosLosTerminosDebenCoincidir() {
+        assertEquals(Map.of(2L, 12), indice.buscar("laptop lenovo", IndiceBusqueda.TODOS_LOS_CAMPOS));
+        assertTrue(indice.buscar("mochila lenovo", IndiceBusqueda.TODOS_LOS_CAMPOS).isEmpty());
+        assertTrue(indice.buscar("  ", IndiceBusqueda.TODOS_LOS_CAMPOS).isEmpty());
+    }
+
+    @Test
+    void buscarCualquieraSumaLosTerminosQueCoinciden() {
+        Map<Long, Integer> puntuaciones = indice.buscarCualquiera(
+                List.of("sony", "oficina", "inexistente"), IndiceBusqueda.TODOS_LOS_CAMPOS);
+        assertEquals(Map.of(1L, 6, 2L, 2), puntuaciones);
+    }
+
+    @Test
+    void sincronizarReindexaLoQueCambioYQuitaLoQueYaNoEsta() {
+        mochila.setNombre("Bolso");
+        mochila.setDescripcion("Bolso de viaje");
+        indice.sincronizar(List.of(laptop, mochila));
+
+        assertTrue(indice.buscar("mochila", IndiceBusqueda.TODOS_LOS_CAMPOS).isEmpty());
+        assertEquals(Map.of(3L, 6), indice.buscar("bolso", IndiceBusqueda.TODOS_LOS_CAMPOS));
+
+        // La cámara ya no está en el catálogo: solo queda la mención en la descripción de la laptop
+        assertTrue(indice.buscar("sony", IndiceBusqueda.TODOS_LOS_CAMPOS).isEmpty());
+        assertEquals(Map.of(2L, 2), indice.buscar("camara", IndiceBusqueda.TODOS_LOS_CAMPOS));
+    }
+}
@@ -0,0 +1,145 @@
+package mowi.store.sboot_api.service;
+
+import com.stripe.exception.StripeException;
+import com.stripe.model.PaymentIntent;
+import com.stripe.param.PaymentIntentCreateParams;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Contra un mock local de la API de Stripe (/v1/payment_intents)
+class PasarelaStripeTest {
+
+    private HttpServer servidor;
+    private final AtomicInteger llamadas = new AtomicInteger();
+    private volatile int status = 200;
+    private final AtomicInteger fallosPendientes = new AtomicInteger();
+    private volatile long demoraMs = 0;
+    private volatile String autorizacion;
+    private volatile String cuerpoRecibido;
+
+    @BeforeEach
+    void iniciarMock() throws Exception {
+        servidor = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        servidor.setExecutor(Executors.newCachedThreadPool());
+        servidor.createContext("/v1/payment_intents", exchange -> {
+            llamadas.incrementAndGet();
+            autorizacion = exchange.getRequestHeaders().getFirst("Authorization");
+            cuerpoRecibido = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            try {
+                Thread.sleep(demoraMs);
+            } catch (InterruptedException ignored) {
+            }
+            int codigo = fallosPendientes.getAndUpdate(n -> Math.max(0, n - 1)) > 0 ? 503 : status;
+            String json = codigo == 200
+                    ? "{\"id\":\"pi_123\",\"object\":\"payment_intent\",\"status\":\"succeeded\","
+                    + "\"client_secret\":\"pi_123_secret_x\",\"amount\":1000}"
+                    : "{\"error\":{\"type\":\"api_error\",\"message\":\"falla\"}}";
+            byte[] body = json.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(codigo, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        servidor.start();
+    }
+
+    @AfterEach
+    void detenerMock() {
+        servidor.stop(0);
+    }
+
+    private PasarelaStripe pasarela(int maxConcurrentes, int umbralFallos) {
+        return pasarela(2000, 0, maxConcurrentes, umbralFallos);
+    }
+
+    private PasarelaStripe pasarela(int plazoMs, int reintentos, int maxConcurrentes, int umbralFallos) {
+        String base = "http://127.0.0.1:" + servidor.getAddress().getPort();
+        return new PasarelaStripe("sk_test_mock", base, 1000, plazoMs, reintentos, maxConcurrentes, 50, umbralFallos, 60_000);
+    }
+
+    private static PaymentIntentCreateParams params() {
+        return PaymentIntentCreateParams.builder().setAmount(1000L).setCurrency("usd").build();
+    }
+
+    @Test
+    void creaYConsultaContraElMock() throws Exception {
+        PasarelaStripe pasarela = pasarela(4, 3);
+
+        PaymentIntent creado = pasarela.crearPaymentIntent(params());
+        assertEquals("pi_123", creado.getId());
+        assertEquals("pi_123_secret_x", creado.getClientSecret());
+        assertEquals("Bearer sk_test_mock", autorizacion);
+        assertTrue(cuerpoRecibido.contains("amount=1000"));
+
+        assertEquals("succeeded", pasarela.obtenerPaymentIntent("pi_123").getStatus());
+    }
+
+    @Test
+    void rechazaAlInstanteCuandoNoHayCupo() throws Exception {
+        demoraMs = 500;
+        PasarelaStripe pasarela = pasarela(1, 3);
+
+        CompletableFuture<PaymentIntent> lenta = CompletableFuture.supplyAsync(() -> {
+            try {
+                return pasarela.obtenerPaymentIntent("pi_123");
+            } catch (StripeException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        Thread.sleep(100);
+
+        long inicio = System.currentTimeMillis();
+        RuntimeException rechazo = assertThrows(RuntimeException.class, () -> pasarela.obtenerPaymentIntent("pi_123"));
+        assertTrue(rechazo.getMessage().contains("saturado"));
+        assertTrue(System.currentTimeMillis() - inicio < 400);
+        assertEquals("pi_123", lenta.get().getId());
+    }
+
+    @Test
+    void abreElCircuitoTrasErroresDelServidor() {
+        status = 500;
+        PasarelaStripe pasarela = pasarela(4, 2);
+
+        assertThrows(StripeException.class, () -> pasarela.obtenerPaymentIntent("pi_1"));
+        assertThrows(StripeException.class, () -> pasarela.obtenerPaymentIntent("pi_2"));
+        assertEquals(CircuitBreaker.Estado.ABIERTO, pasarela.getEstadoCircuito());
+
+        // Con el circuito abierto ya no se llama al servidor
+        assertThrows(RuntimeException.class, () -> pasarela.obtenerPaymentIntent("pi_3"));
+        assertEquals(2, llamadas.get());
+    }
+
+    @Test
+    void losReintentosNoPasanDelPlazoTotal() {
+        status = 500;
+        demoraMs = 300;
+        PasarelaStripe pasarela = pasarela(1000, 5, 4, 3);
+
+        long inicio = System.currentTimeMillis();
+        assertThrows(StripeException.class, () -> pasarela.obtenerPaymentIntent("pi_1"));
+        long duracion = System.currentTimeMillis() - inicio;
+
+        // Con 5 reintentos de 300 ms más el backoff serían varios segundos: se corta en el plazo de 1 s
+        assertTrue(duracion < 1400, "duró " + duracion + " ms");
+        assertTrue(llamadas.get() >= 2 && llamadas.get() < 6, llamadas.get() + " llamadas");
+    }
+
+    @Test
+    void reintentaUnErrorDelServidorSiQuedaPlazo() throws Exception {
+        fallosPendientes.set(1);
+        PasarelaStripe pasarela = pasarela(5000, 1, 4, 3);
+
+        assertEquals("pi_123", pasarela.obtenerPaymentIntent("pi_123").getId());
+        assertEquals(2, llamadas.get());
+    }
+}
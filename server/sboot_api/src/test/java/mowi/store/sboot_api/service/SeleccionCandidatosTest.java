@@ -0,0 +1,55 @@
+package mowi.store.sboot_api.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Rango de precio extraído de consultas ya plegadas (minúsculas y sin tildes)
+class SeleccionCandidatosTest {
+
+    private static void assertRango(String consulta, String minimo, String maximo) {
+        BigDecimal[] rango = SeleccionCandidatos.extraerRangoPrecio(consulta);
+        assertMismoValor(minimo, rango[0]);
+        assertMismoValor(maximo, rango[1]);
+    }
+
+    private static void assertMismoValor(String esperado, BigDecimal valor) {
+        if (esperado == null) {
+            assertNull(valor);
+        } else {
+            assertNotNull(valor);
+            assertEquals(0, new BigDecimal(esperado).compareTo(valor), esperado + " != " + valor);
+        }
+    }
+
+    @Test
+    void entreDosPrecios() {
+        assertRango("laptop entre 300 y 800", "300", "800");
+        assertRango("audifonos entre $50 a $20", "20", "50");
+    }
+
+    @Test
+    void menosDeYMasDe() {
+        assertRango("zapatillas menos de 100", null, "100");
+        assertRango("televisor mas de 400", "400", null);
+        assertRango("silla no mas de 90", null, "90");
+    }
+
+    @Test
+    void separadoresDeMilesYDecimales() {
+        assertRango("celular menos de 1,500", null, "1500");
+        assertRango("celular menos de 1.500", null, "1500");
+        assertRango("tv entre 1.200 y 2,000,000", "1200", "2000000");
+        assertRango("monitor hasta 1.299,90", null, "1299.9");
+        assertRango("monitor hasta 1,299.90", null, "1299.9");
+        assertRango("cable menos de 12,5", null, "12.5");
+        assertRango("mouse bajo $499.99.", null, "499.99");
+    }
+
+    @Test
+    void sinPrecio() {
+        assertRango("laptop gamer", null, null);
+    }
+}
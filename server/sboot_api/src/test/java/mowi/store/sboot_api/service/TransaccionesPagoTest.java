@@ -0,0 +1,96 @@
+package mowi.store.sboot_api.service;
+
+import mowi.store.sboot_api.model.Transaccion;
+import mowi.store.sboot_api.repository.PedidoRepository;
+import mowi.store.sboot_api.repository.TransaccionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+// Lote de la conciliación: solo se cuenta y publica lo que el UPDATE cambió de verdad
+class TransaccionesPagoTest {
+
+    private final TransaccionRepository transaccionRepository = mock(TransaccionRepository.class);
+    private final PedidoRepository pedidoRepository = mock(PedidoRepository.class);
+    private final CarritoService carritoService = mock(CarritoService.class);
+    private final EstadoPagos estadoPagos = mock(EstadoPagos.class);
+    private final TransaccionesPago transaccionesPago = new TransaccionesPago(mock(PlatformTransactionManager.class));
+
+    @BeforeEach
+    void configurar() {
+        ReflectionTestUtils.setField(transaccionesPago, "transaccionRepository", transaccionRepository);
+        ReflectionTestUtils.setField(transaccionesPago, "pedidoRepository", pedidoRepository);
+        ReflectionTestUtils.setField(transaccionesPago, "carritoService", carritoService);
+        ReflectionTestUtils.setField(transaccionesPago, "estadoPagos", estadoPagos);
+        when(transaccionRepository.findByStripePaymentIntentIdIn(anyCollection())).thenReturn(List.of(
+                transaccion(1, "pi_1", "PENDIENTE"),
+                transaccion(2, "pi_2", "PENDIENTE"),
+                transaccion(3, "pi_3", "EXITOSO")));
+        when(pedidoRepository.findUsuarioIds(anyCollection())).thenReturn(List.of(9L));
+    }
+
+    private static Transaccion transaccion(long pedidoId, String paymentIntentId, String estado) {
+        Transaccion trans = new Transaccion(pedidoId, 10.0, paymentIntentId);
+        trans.setId(pedidoId);
+        trans.setEstado(estado);
+        return trans;
+    }
+
+    private static Map<String, TransaccionesPago.Cambio> cambios() {
+        Map<String, TransaccionesPago.Cambio> cambios = new LinkedHashMap<>();
+        cambios.put("pi_1", new TransaccionesPago.Cambio("EXITOSO", null));
+        cambios.put("pi_2", new TransaccionesPago.Cambio("FALLIDO", "Cancelado en Stripe"));
+        cambios.put("pi_3", new TransaccionesPago.Cambio("FALLIDO", "Cancelado en Stripe"));
+        return cambios;
+    }
+
+    @Test
+    void cuentaYPublicaLasQueCambiaron() {
+        when(transaccionRepository.cambiarEstados(anyCollection(), anyString(), any(), any())).thenReturn(1);
+
+        assertEquals(2, transaccionesPago.aplicarEstados(cambios()));
+
+        // pi_3 ya era EXITOSO: ni se actualiza ni se publica
+        verify(transaccionRepository).cambiarEstados(eq(List.of("pi_1")), eq("EXITOSO"), notNull(), isNull());
+        verify(transaccionRepository).cambiarEstados(eq(List.of("pi_2")), eq("FALLIDO"), isNull(), eq("Cancelado en Stripe"));
+        verify(estadoPagos, times(2)).actualizar(any());
+        verify(pedidoRepository).actualizarEstadosSiPendientes(eq(Set.of(1L)), eq(TransaccionesPago.PEDIDO_PAGADO), any());
+        verify(carritoService).limpiarCarrito(9L);
+    }
+
+    @Test
+    void siElUpdateNoCambiaLoEsperadoNoPublicaNada() {
+        when(transaccionRepository.cambiarEstados(anyCollection(), anyString(), any(), any())).thenReturn(0);
+
+        RuntimeException error = assertThrows(RuntimeException.class, () -> transaccionesPago.aplicarEstados(cambios()));
+
+        assertTrue(error.getMessage().contains("se reintenta"));
+        verify(estadoPagos, never()).actualizar(any());
+        verify(pedidoRepository, never()).actualizarEstadosSiPendientes(any(), any(), any());
+        verify(carritoService, never()).limpiarCarrito(any());
+    }
+
+    @Test
+    void abandonaLasQueNuncaTuvieronPaymentIntent() {
+        Transaccion sinPaymentIntent = transaccion(8, null, "PENDIENTE");
+        when(transaccionRepository.findSinPaymentIntentSinResolver(List.of(8L, 9L))).thenReturn(List.of(sinPaymentIntent));
+        when(transaccionRepository.abandonarSinPaymentIntent(List.of(8L), "Abandonado")).thenReturn(1);
+
+        // La 9 ya se resolvió por otro lado: ni se actualiza ni se publica
+        assertEquals(1, transaccionesPago.abandonarSinPaymentIntent(List.of(8L, 9L), "Abandonado"));
+
+        assertEquals("FALLIDO", sinPaymentIntent.getEstado());
+        verify(estadoPagos).actualizar(sinPaymentIntent);
+        verify(pedidoRepository, never()).actualizarEstadosSiPendientes(any(), any(), any());
+    }
+}